@@ -3,6 +3,7 @@ plugins {
     java
     alias(libs.plugins.shadow) apply false
     alias(libs.plugins.lombok) apply false
+    alias(libs.plugins.jmh) apply false
 }
 
 group = "de.leycm.dnsniper"
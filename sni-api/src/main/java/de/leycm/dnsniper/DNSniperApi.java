@@ -11,11 +11,19 @@
 package de.leycm.dnsniper;
 
  import de.leycm.dnsniper.dns.DnsScanResult;
+ import de.leycm.dnsniper.event.ScanEvent;
+ import de.leycm.dnsniper.event.ScanEventSink;
+ import de.leycm.dnsniper.port.CidrRange;
+ import de.leycm.dnsniper.port.PortResult;
  import de.leycm.dnsniper.port.PortScanResult;
+ import de.leycm.dnsniper.port.PortSet;
 
  import java.io.IOException;
  import java.net.InetAddress;
+ import java.util.Collection;
  import java.util.List;
+ import java.util.Map;
+ import java.util.function.Consumer;
  import java.util.function.Predicate;
 
  /**
@@ -52,6 +60,71 @@ package de.leycm.dnsniper;
       */
      PortScanResult scanAllPorts(InetAddress address, Predicate<Integer> portFilter);
 
+     /**
+      * Scans the given set of TCP ports on the specified address.
+      * <p>
+      * Only the ports contained in the {@link PortSet} are visited, so small selections
+      * such as {@code PortSet.parse("22,80,443")} cost nothing for the unselected ports.
+      * </p>
+      *
+      * @param address the target {@link InetAddress} to scan
+      * @param ports   the {@link PortSet} to scan
+      * @return a {@link PortScanResult} containing the results of the selected ports
+      */
+     PortScanResult scanPorts(InetAddress address, PortSet ports);
+
+     /**
+      * Scans TCP ports on the specified address and streams each result as it completes.
+      * <p>
+      * Results are handed to the sink in completion order while the scan is running, so
+      * downstream work can start on the first open port. Only a bounded in-flight window is
+      * kept in memory. The sink may be invoked concurrently and must be thread-safe.
+      * </p>
+      *
+      * @param address    the target {@link InetAddress} to scan
+      * @param portFilter a {@link Predicate} to filter the ports to be scanned
+      * @param sink       a {@link Consumer} receiving each {@link PortResult}
+      */
+     void streamPorts(InetAddress address, Predicate<Integer> portFilter, Consumer<PortResult> sink);
+
+     /**
+      * Scans the given set of TCP ports and streams each result as it completes.
+      *
+      * @param address the target {@link InetAddress} to scan
+      * @param ports   the {@link PortSet} to scan
+      * @param sink    a {@link Consumer} receiving each {@link PortResult}
+      */
+     void streamPorts(InetAddress address, PortSet ports, Consumer<PortResult> sink);
+
+     /**
+      * Scans the given set of TCP ports on several hosts, interleaving probes across hosts.
+      *
+      * @param hosts the target addresses
+      * @param ports the {@link PortSet} to scan on every host
+      * @return the {@link PortScanResult} of each host, in the order of {@code hosts}
+      */
+     Map<InetAddress, PortScanResult> scanHosts(Collection<InetAddress> hosts, PortSet ports);
+
+     /**
+      * Scans the given set of TCP ports on every address of a CIDR block.
+      *
+      * @param range the {@link CidrRange} to scan
+      * @param ports the {@link PortSet} to scan on every host
+      * @return the {@link PortScanResult} of each host, in ascending address order
+      */
+     Map<InetAddress, PortScanResult> scanRange(CidrRange range, PortSet ports);
+
+     /**
+      * Installs the sink receiving structured {@link ScanEvent}s from all scanners.
+      * <p>
+      * Event reporting is off by default ({@link ScanEventSink#noop()}); scanners check
+      * {@link ScanEventSink#isEnabled} before building an event, so a disabled level costs nothing.
+      * </p>
+      *
+      * @param sink the {@link ScanEventSink}, or {@link ScanEventSink#noop()} to disable events
+      */
+     void setEventSink(ScanEventSink sink);
+
      DnsScanResult scanDnsEntry(String domain);
 
      List<String> scanSubDomain(String domain);
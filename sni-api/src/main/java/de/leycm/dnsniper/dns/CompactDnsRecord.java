@@ -0,0 +1,434 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.dns;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Memory-compact form of a {@link DnsRecord}.
+ * <p>
+ * Instead of formatted strings, a record keeps its numeric type code and its RDATA in wire
+ * format: an A record holds its 4 address bytes, an AAAA record its 16, and names inside the
+ * RDATA (NS, CNAME, MX, SOA) are stored uncompressed. Owner names are interned, so the many
+ * records of one name share a single {@code String}. With compressed oops an A record takes
+ * 56 bytes instead of about 140 for a {@link DnsRecord} with its own name and data strings.
+ * </p>
+ * <p>
+ * Two records are equal if they have the same owner, type and RDATA; the TTL is not part of
+ * a record's identity (RFC 2181 section 5). Equality and hashing compare the owner by
+ * reference and the RDATA bytewise, without building any strings.
+ * </p>
+ * <p>
+ * RDATA is formatted on demand by {@link #data()} exactly like the {@link DnsRecord}s produced
+ * by the parser, and {@link #asDnsRecords(List)} exposes a list of compact records through the
+ * {@link DnsRecord} API. Records of other types keep the text of their {@link DnsRecord} as
+ * UTF-8. Instances are immutable.
+ * </p>
+ */
+public final class CompactDnsRecord {
+
+    public static final int TYPE_A = 1;
+    public static final int TYPE_NS = 2;
+    public static final int TYPE_CNAME = 5;
+    public static final int TYPE_SOA = 6;
+    public static final int TYPE_MX = 15;
+    public static final int TYPE_TXT = 16;
+    public static final int TYPE_AAAA = 28;
+
+    private final String name;
+    private final int type;
+    private final int ttl;
+    private final byte[] rdata;
+    private final int hash;
+
+    private CompactDnsRecord(@NotNull String name, int type, long ttl, byte @NotNull [] rdata) {
+        this.name = name.intern();
+        this.type = type;
+        this.ttl = (int) Math.max(-1, Math.min(ttl, 0xFFFFFFFFL));
+        this.rdata = rdata;
+        this.hash = 31 * (31 * this.name.hashCode() + type) + Arrays.hashCode(rdata);
+    }
+
+    /**
+     * Creates a record from wire-format RDATA.
+     *
+     * @param name  the owner name
+     * @param type  the type code
+     * @param ttl   the TTL in seconds, or {@code -1} if unknown
+     * @param rdata the RDATA with all names uncompressed; copied
+     * @return the record
+     */
+    public static @NotNull CompactDnsRecord of(@NotNull String name, int type, long ttl, byte @NotNull [] rdata) {
+        return new CompactDnsRecord(name, type, ttl, rdata.clone());
+    }
+
+    /**
+     * Packs a {@link DnsRecord} by parsing its formatted data.
+     *
+     * @param record the record
+     * @return the compact record
+     * @throws IllegalArgumentException if the data is not valid for the record's type
+     */
+    public static @NotNull CompactDnsRecord of(@NotNull DnsRecord record) {
+        int type = typeCode(record.type());
+        return new CompactDnsRecord(record.name(), type, record.ttl(), encode(type, record.data()));
+    }
+
+    /**
+     * Returns the records as a read-only list of {@link DnsRecord}s, materialized on access.
+     *
+     * @param records the compact records
+     * @return the list view
+     */
+    public static @NotNull List<DnsRecord> asDnsRecords(@NotNull List<CompactDnsRecord> records) {
+        return new RecordList(records.toArray(new CompactDnsRecord[0]));
+    }
+
+    /**
+     * Returns the compact records behind a list, unwrapping a view made by
+     * {@link #asDnsRecords(List)} and packing any other list.
+     *
+     * @param records the records
+     * @return the compact records
+     * @throws IllegalArgumentException if a record cannot be packed
+     */
+    public static @NotNull List<CompactDnsRecord> compact(@NotNull List<DnsRecord> records) {
+        if (records instanceof RecordList view) return view.records();
+        List<CompactDnsRecord> out = new ArrayList<>(records.size());
+        for (DnsRecord r : records) out.add(of(r));
+        return out;
+    }
+
+    /**
+     * @return the owner name, interned
+     */
+    public @NotNull String name() {
+        return name;
+    }
+
+    /**
+     * @return the numeric type code, e.g. {@value #TYPE_A}
+     */
+    public int type() {
+        return type;
+    }
+
+    /**
+     * @return the type mnemonic, e.g. {@code "A"}, or {@code "TYPE<n>"} for uncommon types
+     */
+    public @NotNull String typeName() {
+        return typeName(type);
+    }
+
+    /**
+     * @return the TTL in seconds, or {@code -1} if unknown
+     */
+    public long ttl() {
+        return ttl == -1 ? -1 : Integer.toUnsignedLong(ttl);
+    }
+
+    /**
+     * @return a copy of the RDATA
+     */
+    public byte @NotNull [] rdata() {
+        return rdata.clone();
+    }
+
+    public int rdataLength() {
+        return rdata.length;
+    }
+
+    /**
+     * @return the address of an A or AAAA record, or {@code null} for other records
+     */
+    public @Nullable InetAddress address() {
+        if (!(type == TYPE_A && rdata.length == 4) && !(type == TYPE_AAAA && rdata.length == 16)) return null;
+        try {
+            return InetAddress.getByAddress(rdata);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Formats the RDATA the same way as the parser formats {@link DnsRecord#data()}.
+     *
+     * @return the RDATA as text
+     */
+    public @NotNull String data() {
+        try {
+            switch (type) {
+                case TYPE_A -> {
+                    if (rdata.length == 4) {
+                        return (rdata[0] & 0xFF) + "." + (rdata[1] & 0xFF) + "." + (rdata[2] & 0xFF) + "." + (rdata[3] & 0xFF);
+                    }
+                }
+                case TYPE_AAAA -> {
+                    if (rdata.length == 16) {
+                        StringBuilder sb = new StringBuilder(39);
+                        for (int i = 0; i < 8; i++) {
+                            if (i > 0) sb.append(':');
+                            sb.append(Integer.toHexString(u16(2 * i)));
+                        }
+                        return sb.toString();
+                    }
+                }
+                case TYPE_NS, TYPE_CNAME -> {
+                    return readName(0, new StringBuilder(32));
+                }
+                case TYPE_MX -> {
+                    return readName(2, new StringBuilder(32)) + " preference=" + u16(0);
+                }
+                case TYPE_TXT -> {
+                    StringBuilder sb = new StringBuilder(rdata.length);
+                    int off = 0;
+                    while (off < rdata.length) {
+                        int l = rdata[off++] & 0xFF;
+                        if (l == 0) continue;
+                        int n = Math.min(l, rdata.length - off);
+                        sb.append(new String(rdata, off, n, StandardCharsets.UTF_8));
+                        off += l;
+                        if (off < rdata.length) sb.append(' ');
+                    }
+                    return sb.toString();
+                }
+                case TYPE_SOA -> {
+                    int off = 0;
+                    String mname = readName(off, new StringBuilder(32));
+                    off = skipName(off);
+                    String rname = readName(off, new StringBuilder(32));
+                    off = skipName(off);
+                    return "mname=" + mname + " rname=" + rname
+                            + " serial=" + u32(off)
+                            + " refresh=" + u32(off + 4)
+                            + " retry=" + u32(off + 8)
+                            + " expire=" + u32(off + 12)
+                            + " minimum=" + u32(off + 16);
+                }
+                default -> {
+                    return new String(rdata, StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+        return new String(rdata, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return this record as a {@link DnsRecord}
+     */
+    @Contract(" -> new")
+    public @NotNull DnsRecord toDnsRecord() {
+        return new DnsRecord(name, typeName(type), ttl(), data());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompactDnsRecord other)) return false;
+        // both owners are interned
+        return hash == other.hash && type == other.type && name == other.name && Arrays.equals(rdata, other.rdata);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return name + " " + ttl() + " " + typeName(type) + " " + data();
+    }
+
+    /**
+     * @param type a type code
+     * @return the type mnemonic, e.g. {@code "A"}, or {@code "TYPE<n>"} for uncommon types
+     */
+    public static @NotNull String typeName(int type) {
+        return switch (type) {
+            case TYPE_A -> "A";
+            case TYPE_AAAA -> "AAAA";
+            case TYPE_CNAME -> "CNAME";
+            case TYPE_MX -> "MX";
+            case TYPE_NS -> "NS";
+            case TYPE_TXT -> "TXT";
+            case TYPE_SOA -> "SOA";
+            default -> "TYPE" + type;
+        };
+    }
+
+    /**
+     * @param name a type mnemonic as returned by {@link #typeName(int)}
+     * @return the type code
+     * @throws IllegalArgumentException if the mnemonic is unknown
+     */
+    public static int typeCode(@NotNull String name) {
+        return switch (name) {
+            case "A" -> TYPE_A;
+            case "AAAA" -> TYPE_AAAA;
+            case "CNAME" -> TYPE_CNAME;
+            case "MX" -> TYPE_MX;
+            case "NS" -> TYPE_NS;
+            case "TXT" -> TYPE_TXT;
+            case "SOA" -> TYPE_SOA;
+            default -> {
+                if (name.startsWith("TYPE")) {
+                    try {
+                        yield Integer.parseInt(name, 4, name.length(), 10);
+                    } catch (NumberFormatException ignored) {}
+                }
+                throw new IllegalArgumentException("Unknown record type: " + name);
+            }
+        };
+    }
+
+    private int u16(int off) {
+        return ((rdata[off] & 0xFF) << 8) | (rdata[off + 1] & 0xFF);
+    }
+
+    private long u32(int off) {
+        return ((long) u16(off) << 16) | u16(off + 2);
+    }
+
+    private String readName(int off, StringBuilder sb) {
+        while (true) {
+            int len = rdata[off] & 0xFF;
+            if (len == 0) break;
+            if (!sb.isEmpty()) sb.append('.');
+            for (int i = off + 1, end = off + 1 + len; i < end; i++) sb.append((char) (rdata[i] & 0xFF));
+            off += 1 + len;
+        }
+        return sb.isEmpty() ? "." : sb.toString();
+    }
+
+    private int skipName(int off) {
+        while (rdata[off] != 0) off += 1 + (rdata[off] & 0xFF);
+        return off + 1;
+    }
+
+    private static byte @NotNull [] encode(int type, @NotNull String data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(data.length() + 2, 512));
+        switch (type) {
+            case TYPE_A, TYPE_AAAA -> {
+                byte[] raw = parseAddress(data, type == TYPE_A ? 4 : 16);
+                out.writeBytes(raw);
+            }
+            case TYPE_NS, TYPE_CNAME -> writeName(out, data);
+            case TYPE_MX -> {
+                int sep = data.lastIndexOf(" preference=");
+                if (sep < 0) throw new IllegalArgumentException("Malformed MX data: " + data);
+                int pref = Integer.parseInt(data.substring(sep + 12));
+                out.write(pref >>> 8);
+                out.write(pref);
+                writeName(out, data.substring(0, sep));
+            }
+            case TYPE_TXT -> {
+                byte[] text = data.getBytes(StandardCharsets.UTF_8);
+                for (int off = 0; off < text.length || off == 0; off += 255) {
+                    int n = Math.min(255, text.length - off);
+                    out.write(n);
+                    out.write(text, off, n);
+                }
+            }
+            case TYPE_SOA -> {
+                String[] fields = data.split(" ");
+                if (fields.length != 7) throw new IllegalArgumentException("Malformed SOA data: " + data);
+                writeName(out, field(fields[0], "mname="));
+                writeName(out, field(fields[1], "rname="));
+                String[] keys = {"serial=", "refresh=", "retry=", "expire=", "minimum="};
+                for (int i = 0; i < keys.length; i++) {
+                    long v = Long.parseLong(field(fields[i + 2], keys[i]));
+                    out.write((int) (v >>> 24));
+                    out.write((int) (v >>> 16));
+                    out.write((int) (v >>> 8));
+                    out.write((int) v);
+                }
+            }
+            default -> out.writeBytes(data.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static @NotNull String field(@NotNull String token, @NotNull String key) {
+        if (!token.startsWith(key)) throw new IllegalArgumentException("Expected " + key + " in " + token);
+        return token.substring(key.length());
+    }
+
+    private static void writeName(ByteArrayOutputStream out, @NotNull String name) {
+        int len = name.length();
+        if (len > 0 && name.charAt(len - 1) == '.') len--;
+        int start = 0;
+        while (start < len) {
+            int end = name.indexOf('.', start);
+            if (end < 0 || end > len) end = len;
+            int n = end - start;
+            if (n == 0 || n > 63) throw new IllegalArgumentException("Invalid label in " + name);
+            out.write(n);
+            for (int i = start; i < end; i++) out.write(name.charAt(i));
+            start = end + 1;
+        }
+        out.write(0);
+    }
+
+    private static byte @NotNull [] parseAddress(@NotNull String literal, int length) {
+        // only hand literals to InetAddress so that a malformed record never triggers a lookup
+        boolean literalForm = !literal.isEmpty();
+        for (int i = 0; i < literal.length() && literalForm; i++) {
+            char c = literal.charAt(i);
+            literalForm = length == 4 ? (c >= '0' && c <= '9') || c == '.' : Character.digit(c, 16) >= 0 || c == ':' || c == '.';
+        }
+        if (length == 16 && literal.indexOf(':') < 0) literalForm = false;
+        try {
+            if (literalForm) {
+                byte[] raw = InetAddress.getByName(literal).getAddress();
+                if (raw.length == length) return raw;
+            }
+        } catch (UnknownHostException ignored) {
+        }
+        throw new IllegalArgumentException("Not an IPv" + (length == 4 ? 4 : 6) + " literal: " + literal);
+    }
+
+    /**
+     * Read-only {@link DnsRecord} view over compact records.
+     */
+    public static final class RecordList extends AbstractList<DnsRecord> implements RandomAccess {
+        private final CompactDnsRecord[] records;
+
+        private RecordList(CompactDnsRecord[] records) {
+            this.records = records;
+        }
+
+        /**
+         * @return the compact records behind this view
+         */
+        public @NotNull List<CompactDnsRecord> records() {
+            return Collections.unmodifiableList(Arrays.asList(records));
+        }
+
+        @Override
+        public DnsRecord get(int index) {
+            return records[index].toDnsRecord();
+        }
+
+        @Override
+        public int size() {
+            return records.length;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.event;
+
+import de.leycm.dnsniper.port.PortResult;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+
+/**
+ * Structured event emitted by the scanners.
+ * <p>
+ * Events carry raw fields rather than preformatted text, so emitting one costs a single
+ * small allocation and formatting happens only in the sink, typically off the scan thread.
+ * </p>
+ */
+public sealed interface ScanEvent permits ScanEvent.PortProbed, ScanEvent.CandidateQueued, ScanEvent.Message {
+
+    /**
+     * @return the wall-clock time of the event in epoch milliseconds
+     */
+    long timestamp();
+
+    /**
+     * @return the severity of the event
+     */
+    ScanEventLevel level();
+
+    /**
+     * Formats the event as a single human-readable line (without line separator).
+     *
+     * @param out the builder to append to
+     */
+    void formatTo(@NotNull StringBuilder out);
+
+    /**
+     * A single port was classified.
+     *
+     * @param timestamp epoch milliseconds
+     * @param target    the scanned address
+     * @param result    the port result
+     */
+    record PortProbed(long timestamp, InetAddress target, PortResult result) implements ScanEvent {
+        @Override
+        public ScanEventLevel level() {
+            return ScanEventLevel.TRACE;
+        }
+
+        @Override
+        public void formatTo(@NotNull StringBuilder out) {
+            out.append(target.getHostAddress()).append(':').append(result.port())
+                    .append(" -> ").append(result.status())
+                    .append(" (").append(result.pingMs()).append("ms)");
+        }
+    }
+
+    /**
+     * A subdomain candidate was queued for resolution.
+     *
+     * @param timestamp epoch milliseconds
+     * @param fqdn      the candidate name
+     * @param index     the 1-based position of the candidate in the wordlist
+     */
+    record CandidateQueued(long timestamp, String fqdn, long index) implements ScanEvent {
+        @Override
+        public ScanEventLevel level() {
+            return ScanEventLevel.TRACE;
+        }
+
+        @Override
+        public void formatTo(@NotNull StringBuilder out) {
+            out.append("Scanning ").append(fqdn).append('[').append(index).append(']');
+        }
+    }
+
+    /**
+     * Free-form message such as a scan summary.
+     *
+     * @param timestamp epoch milliseconds
+     * @param level     the severity
+     * @param source    the emitting component, e.g. {@code "port"}
+     * @param text      the message
+     */
+    record Message(long timestamp, ScanEventLevel level, String source, String text) implements ScanEvent {
+        @Override
+        public void formatTo(@NotNull StringBuilder out) {
+            out.append('[').append(source).append("] ").append(text);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.event;
+
+/**
+ * Severity of a {@link ScanEvent}, from most to least verbose.
+ */
+public enum ScanEventLevel {
+    TRACE, // One event per probed port or queued candidate
+    DEBUG, // Per-step diagnostics
+    INFO,  // Per-scan summaries
+    WARN;  // Problems that did not abort the scan
+
+    /**
+     * @param threshold the minimum level a sink accepts
+     * @return {@code true} if this level is at least {@code threshold}
+     */
+    public boolean isAtLeast(ScanEventLevel threshold) {
+        return ordinal() >= threshold.ordinal();
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.event;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Receives {@link ScanEvent}s from the scanners.
+ * <p>
+ * Scanners call {@link #isEnabled(ScanEventLevel)} before building an event, so a sink that
+ * rejects a level makes the corresponding hot path free. The default sink is {@link #noop()},
+ * i.e. event reporting is off unless a sink is installed via
+ * {@link de.leycm.dnsniper.DNSniperApi#setEventSink(ScanEventSink)}.
+ * </p>
+ * <p>
+ * {@link #publish(ScanEvent)} is called from scanner threads, possibly concurrently, and
+ * should return quickly; wrap slow sinks in an asynchronous one.
+ * </p>
+ */
+public interface ScanEventSink {
+
+    /**
+     * @param level the level of an event about to be published
+     * @return {@code true} if events of this level should be built and published
+     */
+    boolean isEnabled(ScanEventLevel level);
+
+    /**
+     * Publishes an event. Only called for levels this sink is enabled for.
+     *
+     * @param event the event
+     */
+    void publish(ScanEvent event);
+
+    /**
+     * @return a sink that accepts nothing
+     */
+    @Contract(pure = true)
+    static @NotNull ScanEventSink noop() {
+        return Noop.INSTANCE;
+    }
+
+    /**
+     * Creates a synchronous sink that hands every event at or above {@code threshold} to the consumer.
+     *
+     * @param threshold the minimum level
+     * @param consumer  receives the events, possibly concurrently
+     * @return a new sink
+     */
+    @Contract("_, _ -> new")
+    static @NotNull ScanEventSink of(@NotNull ScanEventLevel threshold, @NotNull Consumer<ScanEvent> consumer) {
+        return new ScanEventSink() {
+            @Override
+            public boolean isEnabled(ScanEventLevel level) {
+                return level.isAtLeast(threshold);
+            }
+
+            @Override
+            public void publish(ScanEvent event) {
+                consumer.accept(event);
+            }
+        };
+    }
+
+    /**
+     * Sink that is never enabled.
+     */
+    enum Noop implements ScanEventSink {
+        INSTANCE;
+
+        @Override
+        public boolean isEnabled(ScanEventLevel level) {
+            return false;
+        }
+
+        @Override
+        public void publish(ScanEvent event) {
+        }
+    }
+}
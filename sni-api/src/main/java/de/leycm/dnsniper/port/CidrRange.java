@@ -0,0 +1,189 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.port;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+
+/**
+ * A block of IPv4 or IPv6 addresses in CIDR notation, e.g. {@code 10.0.0.0/22}.
+ * <p>
+ * Iteration is lazy and yields every address of the block in ascending order, including
+ * the network and broadcast addresses. A plain address without prefix is a block of one.
+ * </p>
+ */
+public final class CidrRange implements Iterable<InetAddress> {
+
+    /**
+     * Largest block {@link #toList()} will materialize (a /8 in IPv4).
+     */
+    public static final long MAX_LIST_SIZE = 1L << 24;
+
+    private final byte[] network;
+    private final int prefix;
+
+    private CidrRange(byte @NotNull [] network, int prefix) {
+        this.network = network;
+        this.prefix = prefix;
+        int bits = network.length * 8;
+        for (int i = prefix; i < bits; i++) {
+            network[i >>> 3] &= (byte) ~(0x80 >>> (i & 7));
+        }
+    }
+
+    /**
+     * Parses a block such as {@code "192.168.0.0/24"}, {@code "2001:db8::/120"} or {@code "10.0.0.7"}.
+     * Host bits below the prefix are cleared. Only address literals are accepted; host names are not resolved.
+     *
+     * @param spec the CIDR specification
+     * @return the parsed block
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    public static @NotNull CidrRange parse(@NotNull String spec) {
+        String s = spec.trim();
+        int slash = s.indexOf('/');
+        String addr = slash < 0 ? s : s.substring(0, slash);
+        // only hand literals to InetAddress: IPv4 is digits and dots, IPv6 needs a colon,
+        // so names like "cafe.de" never trigger a lookup
+        boolean v6 = addr.indexOf(':') >= 0;
+        boolean literal = v6
+                ? addr.chars().allMatch(c -> Character.digit(c, 16) >= 0 || c == '.' || c == ':')
+                : addr.indexOf('.') >= 0 && addr.chars().allMatch(c -> (c >= '0' && c <= '9') || c == '.');
+        if (!literal) {
+            throw new IllegalArgumentException("Not an IP address literal: '" + spec + "'");
+        }
+        byte[] bytes;
+        try {
+            bytes = InetAddress.getByName(addr).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Not an IP address literal: '" + spec + "'", e);
+        }
+        int bits = bytes.length * 8;
+        int prefix = bits;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(s.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length in '" + spec + "'", e);
+            }
+            if (prefix < 0 || prefix > bits) {
+                throw new IllegalArgumentException("Prefix length out of range (0-" + bits + ") in '" + spec + "'");
+            }
+        }
+        return new CidrRange(bytes, prefix);
+    }
+
+    /**
+     * @param address any address
+     * @param prefix  the prefix length
+     * @return the block of the given prefix length containing {@code address}
+     */
+    public static @NotNull CidrRange of(@NotNull InetAddress address, int prefix) {
+        byte[] bytes = address.getAddress();
+        if (prefix < 0 || prefix > bytes.length * 8) throw new IllegalArgumentException("Invalid prefix length: " + prefix);
+        return new CidrRange(bytes, prefix);
+    }
+
+    public int prefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the first address of the block
+     */
+    public @NotNull InetAddress network() {
+        return toAddress(network.clone());
+    }
+
+    /**
+     * @return the number of addresses in the block, saturating at {@link Long#MAX_VALUE}
+     */
+    public long size() {
+        int hostBits = network.length * 8 - prefix;
+        return hostBits >= 63 ? Long.MAX_VALUE : 1L << hostBits;
+    }
+
+    /**
+     * @param address an address
+     * @return {@code true} if the address lies in this block
+     */
+    public boolean contains(@NotNull InetAddress address) {
+        byte[] other = address.getAddress();
+        if (other.length != network.length) return false;
+        for (int i = 0; i < prefix; i++) {
+            int mask = 0x80 >>> (i & 7);
+            if ((other[i >>> 3] & mask) != (network[i >>> 3] & mask)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return all addresses of the block
+     * @throws IllegalStateException if the block holds more than {@link #MAX_LIST_SIZE} addresses
+     */
+    public @NotNull List<InetAddress> toList() {
+        long size = size();
+        if (size > MAX_LIST_SIZE) throw new IllegalStateException("CIDR block too large to list: " + this);
+        List<InetAddress> out = new ArrayList<>((int) size);
+        for (InetAddress a : this) out.add(a);
+        return out;
+    }
+
+    @Override
+    public @NotNull Iterator<InetAddress> iterator() {
+        return new Iterator<>() {
+            private final byte[] current = network.clone();
+            private long remaining = size();
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public InetAddress next() {
+                if (remaining <= 0) throw new NoSuchElementException();
+                InetAddress out = toAddress(current.clone());
+                remaining--;
+                for (int i = current.length - 1; i >= 0 && ++current[i] == 0; i--) {
+                    // carry into the next byte
+                }
+                return out;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof CidrRange other && prefix == other.prefix && Arrays.equals(network, other.network));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(network) + prefix;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return network().getHostAddress() + "/" + prefix;
+    }
+
+    private static @NotNull InetAddress toAddress(byte @NotNull [] bytes) {
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e); // only thrown for illegal lengths
+        }
+    }
+}
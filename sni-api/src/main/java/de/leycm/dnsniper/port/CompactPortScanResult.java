@@ -0,0 +1,402 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.port;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Memory-compact form of a port scan result.
+ * <p>
+ * Instead of one {@link PortResult} object per port, the outcome is stored as one bitset per
+ * {@link PortScannerApi.PortStatus} plus a primitive latency array in ascending port order.
+ * A full 1-65535 sweep takes roughly 160 KB instead of several MB, counts are O(1) and
+ * open ports can be iterated straight off their bitset.
+ * </p>
+ * <p>
+ * Latencies are stored with millisecond resolution and saturate at {@value #MAX_PING_MS} ms.
+ * Instances are immutable; use {@link #builder(InetAddress, Instant)} to create one and
+ * {@link #toPortScanResult()} to get a {@link PortScanResult} view.
+ * </p>
+ */
+public final class CompactPortScanResult {
+
+    /**
+     * Largest latency that can be stored, in milliseconds.
+     */
+    public static final int MAX_PING_MS = 0xFFFF;
+
+    private final InetAddress target;
+    private final Instant timestamp;
+    private final BitSet open;
+    private final BitSet closed;
+    private final BitSet timedOut;
+    private final long[] scanned;   // union of the three status sets, as raw words
+    private final int[] wordRank;   // number of scanned ports below each word of 'scanned'
+    private final char[] pingMs;    // latency per scanned port, indexed by rank
+    private final int openCount;
+    private final int closedCount;
+    private final int timedOutCount;
+
+    private CompactPortScanResult(InetAddress target, Instant timestamp, BitSet open, BitSet closed,
+                                  BitSet timedOut, char[] recordedPing, @Nullable PortSet selection) {
+        this.target = target;
+        this.timestamp = timestamp;
+        this.open = open;
+        this.closed = closed;
+        this.timedOut = timedOut;
+
+        BitSet union = (BitSet) open.clone();
+        union.or(closed);
+        union.or(timedOut);
+        this.scanned = union.toLongArray();
+        this.wordRank = new int[scanned.length];
+        int rank = 0;
+        for (int w = 0; w < scanned.length; w++) {
+            wordRank[w] = rank;
+            rank += Long.bitCount(scanned[w]);
+        }
+
+        this.pingMs = new char[rank];
+        int i = 0;
+        for (int port = union.nextSetBit(0); port >= 0; port = union.nextSetBit(port + 1)) {
+            pingMs[i++] = recordedPing[selection == null ? port : selection.rank(port)];
+        }
+
+        this.openCount = open.cardinality();
+        this.closedCount = closed.cardinality();
+        this.timedOutCount = timedOut.cardinality();
+    }
+
+    /**
+     * Creates a builder collecting results for the given target.
+     *
+     * @param target    the scanned address
+     * @param timestamp the time the scan started
+     * @return a new {@link Builder}
+     */
+    public static @NotNull Builder builder(InetAddress target, Instant timestamp) {
+        return new Builder(target, timestamp, 1024, null);
+    }
+
+    /**
+     * Creates a builder whose buffers are sized for ports up to {@code maxPort}.
+     *
+     * @param target    the scanned address
+     * @param timestamp the time the scan started
+     * @param maxPort   the largest port that will be recorded
+     * @return a new {@link Builder}
+     */
+    public static @NotNull Builder builder(InetAddress target, Instant timestamp, int maxPort) {
+        return new Builder(target, timestamp, maxPort + 1, null);
+    }
+
+    /**
+     * Creates a builder that only accepts the ports of a selection, with buffers sized to the
+     * selection rather than to its largest port.
+     *
+     * @param target    the scanned address
+     * @param timestamp the time the scan started
+     * @param ports     the ports that will be recorded
+     * @return a new {@link Builder}
+     */
+    public static @NotNull Builder builder(InetAddress target, Instant timestamp, @NotNull PortSet ports) {
+        return new Builder(target, timestamp, ports.size(), ports);
+    }
+
+    /**
+     * Packs an existing list of port results.
+     *
+     * @param target    the scanned address
+     * @param timestamp the time the scan started
+     * @param ports     the per-port results
+     * @return the compact representation
+     */
+    public static @NotNull CompactPortScanResult of(InetAddress target, Instant timestamp,
+                                                    @NotNull Collection<PortResult> ports) {
+        Builder builder = builder(target, timestamp);
+        for (PortResult r : ports) builder.record(r.port(), r.status(), r.pingMs());
+        return builder.build();
+    }
+
+    public InetAddress target() {
+        return target;
+    }
+
+    public Instant timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of scanned ports
+     */
+    public int size() {
+        return pingMs.length;
+    }
+
+    public int openCount() {
+        return openCount;
+    }
+
+    public int closedCount() {
+        return closedCount;
+    }
+
+    public int timedOutCount() {
+        return timedOutCount;
+    }
+
+    /**
+     * @param port the port number
+     * @return the status of the port, or {@code null} if it was not scanned
+     */
+    public @Nullable PortScannerApi.PortStatus status(int port) {
+        if (port < 0) return null;
+        if (open.get(port)) return PortScannerApi.PortStatus.OPEN;
+        if (closed.get(port)) return PortScannerApi.PortStatus.CLOSED;
+        if (timedOut.get(port)) return PortScannerApi.PortStatus.TIMEOUT;
+        return null;
+    }
+
+    /**
+     * @param port the port number
+     * @return the measured latency in milliseconds, or {@code -1} if the port was not scanned
+     */
+    public long pingMs(int port) {
+        int rank = rank(port);
+        return rank < 0 ? -1 : pingMs[rank];
+    }
+
+    /**
+     * @return {@code true} if the port was scanned and found open
+     */
+    public boolean isOpen(int port) {
+        return port >= 0 && open.get(port);
+    }
+
+    /**
+     * @return the open ports in ascending order
+     */
+    public @NotNull IntStream openPorts() {
+        return open.stream();
+    }
+
+    /**
+     * Calls the consumer for every open port, in ascending order, without allocating.
+     *
+     * @param action receives each open port number
+     */
+    public void forEachOpenPort(@NotNull IntConsumer action) {
+        for (int port = open.nextSetBit(0); port >= 0; port = open.nextSetBit(port + 1)) {
+            action.accept(port);
+        }
+    }
+
+    /**
+     * @return the results of all ports with the given status, in ascending port order
+     */
+    public @NotNull List<PortResult> results(@NotNull PortScannerApi.PortStatus status) {
+        BitSet set = bits(status);
+        List<PortResult> out = new ArrayList<>(set.cardinality());
+        for (int port = set.nextSetBit(0); port >= 0; port = set.nextSetBit(port + 1)) {
+            out.add(new PortResult(port, status, pingMs[rank(port)]));
+        }
+        return out;
+    }
+
+    /**
+     * Returns a read-only list view that materializes {@link PortResult}s on access.
+     * Iteration is O(1) per element and {@code get} is O(log n).
+     *
+     * @return the results of all scanned ports in ascending port order
+     */
+    public @NotNull List<PortResult> asList() {
+        return new PortList();
+    }
+
+    /**
+     * @return a {@link PortScanResult} backed by this compact result
+     */
+    public @NotNull PortScanResult toPortScanResult() {
+        return new PortScanResult(target, timestamp, asList());
+    }
+
+    private BitSet bits(PortScannerApi.@NotNull PortStatus status) {
+        return switch (status) {
+            case OPEN -> open;
+            case CLOSED -> closed;
+            case TIMEOUT -> timedOut;
+        };
+    }
+
+    /**
+     * @return the index of the port among all scanned ports, or {@code -1} if not scanned
+     */
+    private int rank(int port) {
+        if (port < 0) return -1;
+        int w = port >>> 6;
+        if (w >= scanned.length) return -1;
+        long bit = 1L << port;
+        if ((scanned[w] & bit) == 0) return -1;
+        return wordRank[w] + Long.bitCount(scanned[w] & (bit - 1));
+    }
+
+    /**
+     * @return the port with the given index among all scanned ports
+     */
+    private int portAt(int index) {
+        // last word whose rank does not exceed the index; it holds the port
+        int lo = 0;
+        int hi = wordRank.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (wordRank[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+        long word = scanned[lo];
+        for (int k = index - wordRank[lo]; k > 0; k--) word &= word - 1;
+        return (lo << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private int nextScanned(int from) {
+        int w = from >>> 6;
+        if (w >= scanned.length) return -1;
+        long word = scanned[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == scanned.length) return -1;
+            word = scanned[w];
+        }
+    }
+
+    private @NotNull PortResult resultAt(int port, int rank) {
+        return new PortResult(port, status(port), pingMs[rank]);
+    }
+
+    /**
+     * List view over the scanned ports. {@link #get(int)} finds the port by a binary search
+     * over the word ranks, so random access needs no cursor and no lock.
+     */
+    final class PortList extends AbstractList<PortResult> implements RandomAccess {
+
+        CompactPortScanResult owner() {
+            return CompactPortScanResult.this;
+        }
+
+        @Override
+        public PortResult get(int index) {
+            Objects.checkIndex(index, pingMs.length);
+            return resultAt(portAt(index), index);
+        }
+
+        @Override
+        public int size() {
+            return pingMs.length;
+        }
+
+        @Override
+        public @NotNull Iterator<PortResult> iterator() {
+            return new Iterator<>() {
+                private int rank = 0;
+                private int port = nextScanned(0);
+
+                @Override
+                public boolean hasNext() {
+                    return port >= 0;
+                }
+
+                @Override
+                public PortResult next() {
+                    if (port < 0) throw new NoSuchElementException();
+                    PortResult r = resultAt(port, rank++);
+                    port = nextScanned(port + 1);
+                    return r;
+                }
+            };
+        }
+    }
+
+    /**
+     * Collects port results into a {@link CompactPortScanResult}.
+     * {@link #record(int, PortScannerApi.PortStatus, long)} is thread-safe.
+     */
+    public static final class Builder {
+        private final InetAddress target;
+        private final Instant timestamp;
+        private final BitSet open = new BitSet();
+        private final BitSet closed = new BitSet();
+        private final BitSet timedOut = new BitSet();
+        private final PortSet selection;
+        private char[] ping; // by port, or by rank within the selection
+
+        private Builder(InetAddress target, Instant timestamp, int capacity, @Nullable PortSet selection) {
+            this.target = target;
+            this.timestamp = timestamp;
+            this.selection = selection;
+            this.ping = new char[Math.max(1, capacity)];
+        }
+
+        /**
+         * Records the outcome of one port. Recording a port twice keeps the latest outcome.
+         *
+         * @param port   the port number
+         * @param status the port status
+         * @param pingMs the latency in milliseconds
+         * @return this builder
+         * @throws IllegalArgumentException if the port is negative or outside the builder's selection
+         */
+        public synchronized Builder record(int port, PortScannerApi.@NotNull PortStatus status, long pingMs) {
+            if (port < 0) throw new IllegalArgumentException("port >= 0 required");
+            int index = port;
+            if (selection != null) {
+                index = selection.rank(port);
+                if (index < 0) throw new IllegalArgumentException("Port " + port + " is not in " + selection);
+            }
+            open.clear(port);
+            closed.clear(port);
+            timedOut.clear(port);
+            switch (status) {
+                case OPEN -> open.set(port);
+                case CLOSED -> closed.set(port);
+                case TIMEOUT -> timedOut.set(port);
+            }
+            if (index >= ping.length) {
+                ping = Arrays.copyOf(ping, Math.max(index + 1, Math.min(ping.length * 2, 65536)));
+            }
+            ping[index] = (char) Math.max(0, Math.min(pingMs, MAX_PING_MS));
+            return this;
+        }
+
+        /**
+         * Records a port result.
+         *
+         * @param result the result
+         * @return this builder
+         */
+        public Builder record(@NotNull PortResult result) {
+            return record(result.port(), result.status(), result.pingMs());
+        }
+
+        /**
+         * @return an immutable compact result of everything recorded so far
+         */
+        public synchronized @NotNull CompactPortScanResult build() {
+            return new CompactPortScanResult(target, timestamp,
+                    (BitSet) open.clone(), (BitSet) closed.clone(), (BitSet) timedOut.clone(), ping, selection);
+        }
+    }
+}
@@ -20,6 +20,10 @@ import java.util.stream.Collectors;
 /**
  * Represents the full result of a port scan, including metadata such as the target address,
  * the timestamp of the scan, and the list of scanned ports with their results.
+ * <p>
+ * Results produced by the scanner are views over a {@link CompactPortScanResult}; the
+ * {@code ports} list materializes {@link PortResult}s on access and counts are O(1).
+ * </p>
  */
 public record PortScanResult(
         InetAddress target, // The target address of the scan
@@ -27,15 +31,24 @@ public record PortScanResult(
         List<PortResult> ports // The list of results for all scanned ports
 ) {
 
+    /**
+     * Returns the compact representation backing this result,
+     * packing the port list first if this result is not already a view.
+     *
+     * @return the {@link CompactPortScanResult} of this scan
+     */
+    public @NotNull CompactPortScanResult compact() {
+        if (ports instanceof CompactPortScanResult.PortList view) return view.owner();
+        return CompactPortScanResult.of(target, timestamp, ports);
+    }
+
     /**
      * Retrieves all ports that are open.
      *
      * @return a list of {@link PortResult} objects representing open ports
      */
     public List<PortResult> getOpenPorts() {
-        return ports.stream()
-                .filter(p -> p.status() == PortScannerApi.PortStatus.OPEN)
-                .collect(Collectors.toList());
+        return byStatus(PortScannerApi.PortStatus.OPEN);
     }
 
     /**
@@ -44,9 +57,7 @@ public record PortScanResult(
      * @return a list of {@link PortResult} objects representing ports that timed out
      */
     public List<PortResult> getTimedOutPorts() {
-        return ports.stream()
-                .filter(p -> p.status() == PortScannerApi.PortStatus.TIMEOUT)
-                .collect(Collectors.toList());
+        return byStatus(PortScannerApi.PortStatus.TIMEOUT);
     }
 
     /**
@@ -55,9 +66,7 @@ public record PortScanResult(
      * @return a list of {@link PortResult} objects representing closed ports
      */
     public List<PortResult> getClosedPorts() {
-        return ports.stream()
-                .filter(p -> p.status() == PortScannerApi.PortStatus.CLOSED)
-                .collect(Collectors.toList());
+        return byStatus(PortScannerApi.PortStatus.CLOSED);
     }
 
     /**
@@ -68,14 +77,18 @@ public record PortScanResult(
      * @return a formatted string summarizing the scan result
      */
     public @NotNull String summary() {
-        long open = getOpenPorts().size();
-        long closed = getClosedPorts().size();
-        long timeout = getTimedOutPorts().size();
+        CompactPortScanResult compact = compact();
         return "[ScanResult] " + target.getHostAddress() +
-                " | Open=" + open +
-                " Closed=" + closed +
-                " Timeout=" + timeout +
+                " | Open=" + compact.openCount() +
+                " Closed=" + compact.closedCount() +
+                " Timeout=" + compact.timedOutCount() +
                 " | @ " + timestamp;
     }
-}
 
+    private List<PortResult> byStatus(PortScannerApi.PortStatus status) {
+        if (ports instanceof CompactPortScanResult.PortList view) return view.owner().results(status);
+        return ports.stream()
+                .filter(p -> p.status() == status)
+                .collect(Collectors.toList());
+    }
+}
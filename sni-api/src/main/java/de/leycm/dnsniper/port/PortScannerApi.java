@@ -13,6 +13,9 @@ package de.leycm.dnsniper.port;
      import de.leycm.dnsniper.DNSniperApiProvider;
 
      import java.net.InetAddress;
+     import java.util.Collection;
+     import java.util.Map;
+     import java.util.function.Consumer;
      import java.util.function.Predicate;
 
      /**
@@ -52,6 +55,77 @@ package de.leycm.dnsniper.port;
              return DNSniperApiProvider.get().scanAllPorts(address, portFilter);
          }
 
+         /**
+          * Scans the given set of ports on the IP address.
+          * <p>
+          * Unlike the {@link Predicate} overload this does not test all 65535 ports:
+          * only the ports in the {@link PortSet} are visited.
+          * </p>
+          *
+          * @param address the target {@link InetAddress} (IPv4 or IPv6) to scan
+          * @param ports   the {@link PortSet} to scan, e.g. {@code PortSet.parse("1-1024,3306")}
+          * @return a {@link PortScanResult} containing the results of the selected ports
+          */
+         default PortScanResult scanPorts(InetAddress address, PortSet ports) {
+             return DNSniperApiProvider.get().scanPorts(address, ports);
+         }
+
+         /**
+          * Scans ports on the given IP address and streams each result as soon as it completes.
+          * <p>
+          * Unlike {@link #scanAllPorts(InetAddress, Predicate)} nothing is aggregated: results
+          * arrive in completion order, not port order, and only a bounded window of in-flight
+          * connects is held in memory. The call blocks until every selected port is classified.
+          * The sink may be invoked concurrently from scanner threads and must be thread-safe.
+          * </p>
+          *
+          * @param address    the target {@link InetAddress} (IPv4 or IPv6) to scan
+          * @param portFilter a {@link Predicate} to filter the ports to be scanned
+          * @param sink       a {@link Consumer} receiving each {@link PortResult}
+          */
+         default void streamPorts(InetAddress address, Predicate<Integer> portFilter, Consumer<PortResult> sink) {
+             DNSniperApiProvider.get().streamPorts(address, portFilter, sink);
+         }
+
+         /**
+          * Scans the given set of ports and streams each result as soon as it completes.
+          *
+          * @param address the target {@link InetAddress} (IPv4 or IPv6) to scan
+          * @param ports   the {@link PortSet} to scan
+          * @param sink    a {@link Consumer} receiving each {@link PortResult}
+          * @see #streamPorts(InetAddress, Predicate, Consumer)
+          */
+         default void streamPorts(InetAddress address, PortSet ports, Consumer<PortResult> sink) {
+             DNSniperApiProvider.get().streamPorts(address, ports, sink);
+         }
+
+         /**
+          * Scans the given set of ports on several hosts at once.
+          * <p>
+          * Probes are interleaved across hosts under one shared concurrency budget, so a slow
+          * or filtered host does not hold up the others.
+          * </p>
+          *
+          * @param hosts the target addresses
+          * @param ports the {@link PortSet} to scan on every host
+          * @return the {@link PortScanResult} of each host, in the order of {@code hosts}
+          */
+         default Map<InetAddress, PortScanResult> scanHosts(Collection<InetAddress> hosts, PortSet ports) {
+             return DNSniperApiProvider.get().scanHosts(hosts, ports);
+         }
+
+         /**
+          * Scans the given set of ports on every address of a CIDR block.
+          *
+          * @param range the {@link CidrRange} to scan, e.g. {@code CidrRange.parse("10.0.0.0/24")}
+          * @param ports the {@link PortSet} to scan on every host
+          * @return the {@link PortScanResult} of each host, in ascending address order
+          * @see #scanHosts(Collection, PortSet)
+          */
+         default Map<InetAddress, PortScanResult> scanRange(CidrRange range, PortSet ports) {
+             return DNSniperApiProvider.get().scanRange(range, ports);
+         }
+
          /**
           * Enumeration of possible port states.
           * <p>
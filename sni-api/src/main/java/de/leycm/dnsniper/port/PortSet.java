@@ -0,0 +1,299 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.port;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable set of TCP ports (1-65535) backed by a 8 KB bitmap and a 4 KB rank table.
+ * <p>
+ * Used to select the ports of a scan without boxing: membership tests and iteration work
+ * on primitive {@code int}s, and the size is known up front so scanners can size their
+ * buffers to the selection instead of to all 65535 ports.
+ * </p>
+ * <pre>{@code
+ * PortSet web = PortSet.parse("80,443,8000-8100");
+ * PortSet low = PortSet.range(1, 1024);
+ * }</pre>
+ */
+public final class PortSet {
+
+    public static final int MIN_PORT = 1;
+    public static final int MAX_PORT = 65535;
+
+    private static final int WORDS = (MAX_PORT >>> 6) + 1;
+    private static final PortSet ALL = range(MIN_PORT, MAX_PORT);
+
+    private final long[] words;
+    private final int[] wordRank; // number of ports below each word
+    private final int size;
+
+    private PortSet(long @NotNull [] words) {
+        this.words = words;
+        this.wordRank = new int[words.length];
+        int n = 0;
+        for (int w = 0; w < words.length; w++) {
+            wordRank[w] = n;
+            n += Long.bitCount(words[w]);
+        }
+        this.size = n;
+    }
+
+    /**
+     * @return the set of all ports 1-65535
+     */
+    public static @NotNull PortSet all() {
+        return ALL;
+    }
+
+    /**
+     * @param from first port, inclusive
+     * @param to   last port, inclusive
+     * @return the set of ports in {@code [from, to]}
+     * @throws IllegalArgumentException if the range is invalid
+     */
+    public static @NotNull PortSet range(int from, int to) {
+        long[] words = new long[WORDS];
+        setRange(words, from, to);
+        return new PortSet(words);
+    }
+
+    /**
+     * @param ports the port numbers
+     * @return the set of the given ports
+     * @throws IllegalArgumentException if a port is out of range
+     */
+    public static @NotNull PortSet of(int @NotNull ... ports) {
+        long[] words = new long[WORDS];
+        for (int p : ports) {
+            checkPort(p);
+            words[p >>> 6] |= 1L << p;
+        }
+        return new PortSet(words);
+    }
+
+    /**
+     * Builds a set from a primitive predicate.
+     *
+     * @param filter tested once for every port 1-65535
+     * @return the set of matching ports
+     */
+    public static @NotNull PortSet matching(@NotNull IntPredicate filter) {
+        long[] words = new long[WORDS];
+        for (int p = MIN_PORT; p <= MAX_PORT; p++) {
+            if (filter.test(p)) words[p >>> 6] |= 1L << p;
+        }
+        return new PortSet(words);
+    }
+
+    /**
+     * Builds a set from a boxed predicate, as accepted by the legacy
+     * {@code scanAllPorts(InetAddress, Predicate)} overloads.
+     *
+     * @param filter tested once for every port 1-65535
+     * @return the set of matching ports
+     */
+    public static @NotNull PortSet fromPredicate(@NotNull Predicate<Integer> filter) {
+        return matching(filter::test);
+    }
+
+    /**
+     * Parses a port specification such as {@code "1-1024,3306,8000-8100"}.
+     * Entries are separated by commas and are either a single port or an inclusive
+     * {@code from-to} range; whitespace around entries is ignored.
+     *
+     * @param spec the specification
+     * @return the parsed set
+     * @throws IllegalArgumentException if the specification is malformed or out of range
+     */
+    public static @NotNull PortSet parse(@NotNull String spec) {
+        long[] words = new long[WORDS];
+        int len = spec.length();
+        int i = 0;
+        while (i <= len) {
+            int end = spec.indexOf(',', i);
+            if (end < 0) end = len;
+            int dash = -1;
+            for (int j = i; j < end; j++) {
+                if (spec.charAt(j) == '-') {
+                    dash = j;
+                    break;
+                }
+            }
+            if (dash < 0) {
+                int p = parsePort(spec, i, end);
+                words[p >>> 6] |= 1L << p;
+            } else {
+                setRange(words, parsePort(spec, i, dash), parsePort(spec, dash + 1, end));
+            }
+            i = end + 1;
+        }
+        return new PortSet(words);
+    }
+
+    /**
+     * @param port the port number
+     * @return {@code true} if the port is in this set
+     */
+    public boolean contains(int port) {
+        return port >= MIN_PORT && port <= MAX_PORT && (words[port >>> 6] & (1L << port)) != 0;
+    }
+
+    /**
+     * @return the number of ports in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param port the port number
+     * @return the index of the port in ascending order, or {@code -1} if it is not in this set
+     */
+    public int rank(int port) {
+        if (!contains(port)) return -1;
+        int w = port >>> 6;
+        return wordRank[w] + Long.bitCount(words[w] & ((1L << port) - 1));
+    }
+
+    /**
+     * @param from the port to start searching at, inclusive
+     * @return the smallest port {@code >= from} in this set, or {@code -1} if there is none
+     */
+    public int nextPort(int from) {
+        if (from < MIN_PORT) from = MIN_PORT;
+        if (from > MAX_PORT) return -1;
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == WORDS) return -1;
+            word = words[w];
+        }
+    }
+
+    /**
+     * @return the largest port in this set, or {@code -1} if it is empty
+     */
+    public int maxPort() {
+        for (int w = WORDS - 1; w >= 0; w--) {
+            if (words[w] != 0) return (w << 6) + 63 - Long.numberOfLeadingZeros(words[w]);
+        }
+        return -1;
+    }
+
+    /**
+     * Calls the consumer for every port in ascending order, without allocating.
+     *
+     * @param action receives each port number
+     */
+    public void forEach(@NotNull IntConsumer action) {
+        for (int p = nextPort(MIN_PORT); p >= 0; p = nextPort(p + 1)) {
+            action.accept(p);
+        }
+    }
+
+    /**
+     * @return the ports in ascending order
+     */
+    public int @NotNull [] toArray() {
+        int[] out = new int[size];
+        int i = 0;
+        for (int p = nextPort(MIN_PORT); p >= 0; p = nextPort(p + 1)) out[i++] = p;
+        return out;
+    }
+
+    /**
+     * @return the ports in ascending order
+     */
+    public @NotNull IntStream stream() {
+        return IntStream.of(toArray());
+    }
+
+    /**
+     * @param other another set
+     * @return the union of both sets
+     */
+    @Contract("_ -> new")
+    public @NotNull PortSet union(@NotNull PortSet other) {
+        long[] out = words.clone();
+        for (int w = 0; w < WORDS; w++) out[w] |= other.words[w];
+        return new PortSet(out);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof PortSet other && Arrays.equals(words, other.words));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    /**
+     * @return the canonical specification of this set, e.g. {@code "22,80-90"}
+     */
+    @Override
+    public @NotNull String toString() {
+        StringBuilder sb = new StringBuilder();
+        int p = nextPort(MIN_PORT);
+        while (p >= 0) {
+            int end = p;
+            while (end < MAX_PORT && contains(end + 1)) end++;
+            if (!sb.isEmpty()) sb.append(',');
+            sb.append(p);
+            if (end > p) sb.append('-').append(end);
+            p = nextPort(end + 1);
+        }
+        return sb.toString();
+    }
+
+    private static void setRange(long @NotNull [] words, int from, int to) {
+        checkPort(from);
+        checkPort(to);
+        if (from > to) throw new IllegalArgumentException("Invalid port range: " + from + "-" + to);
+        for (int p = from; p <= to; p++) words[p >>> 6] |= 1L << p;
+    }
+
+    private static int parsePort(@NotNull String spec, int start, int end) {
+        while (start < end && Character.isWhitespace(spec.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(spec.charAt(end - 1))) end--;
+        if (start == end) throw new IllegalArgumentException("Empty port in specification: '" + spec + "'");
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = spec.charAt(i);
+            if (c < '0' || c > '9' || value > MAX_PORT) {
+                throw new IllegalArgumentException("Invalid port '" + spec.substring(start, end) + "' in '" + spec + "'");
+            }
+            value = value * 10 + (c - '0');
+        }
+        checkPort(value);
+        return value;
+    }
+
+    private static void checkPort(int port) {
+        if (port < MIN_PORT || port > MAX_PORT) {
+            throw new IllegalArgumentException("Port out of range (1-65535): " + port);
+        }
+    }
+}
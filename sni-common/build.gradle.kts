@@ -1,4 +1,16 @@
+plugins {
+    alias(libs.plugins.jmh)
+}
+
 dependencies {
     compileOnly(libs.jetanno)
     implementation(project(":api"))
+    jmhCompileOnly(libs.jetanno)
+}
+
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    profilers.add("gc")
 }
@@ -0,0 +1,103 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.bench;
+
+import de.leycm.dnsniper.util.AsyncDnsClient;
+import de.leycm.dnsniper.util.ByteBufferPool;
+import de.leycm.dnsniper.util.DnsCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-query cost of the DNS query path.
+ * <p>
+ * Run with {@code ./gradlew :common:jmh}; the {@code gc} profiler configured in the build
+ * reports {@code gc.alloc.rate.norm}, the bytes allocated per operation. The pooled encode
+ * should report close to 0 B/op, the allocating encode its array, and a full loopback round
+ * trip only the returned future and the waiting thread's signaller.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class DnsQueryAllocationBenchmark {
+
+    private final String[] names = new String[1024];
+    private final ByteBufferPool pool = new ByteBufferPool(DnsCodec.MAX_QUERY_LENGTH, 16);
+    private final AsyncDnsClient.ResponseHandler<Boolean> exists = msg -> DnsCodec.rcode(msg) == 0;
+
+    private DatagramChannel responder;
+    private Thread responderThread;
+    private InetSocketAddress server;
+    private AsyncDnsClient client;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < names.length; i++) names[i] = "host" + i + ".bench.example.com";
+
+        // answers every query with an empty NOERROR response
+        responder = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        server = (InetSocketAddress) responder.getLocalAddress();
+        responderThread = Thread.ofPlatform().daemon().start(() -> {
+            ByteBuffer buf = ByteBuffer.allocateDirect(512);
+            while (responder.isOpen()) {
+                try {
+                    SocketAddress from = responder.receive(buf.clear());
+                    buf.flip().put(2, (byte) (buf.get(2) | 0x80));
+                    responder.send(buf, from);
+                } catch (IOException ignored) {}
+            }
+        });
+        client = new AsyncDnsClient(List.of(server), 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        responder.close();
+        responderThread.interrupt();
+    }
+
+    private String nextName() {
+        return names[next++ & (names.length - 1)];
+    }
+
+    @Benchmark
+    public byte[] encodeToArray() {
+        return DnsCodec.encodeQuery(next, nextName(), DnsCodec.TYPE_A);
+    }
+
+    @Benchmark
+    public long encodeIntoPooledBuffer() {
+        ByteBuffer buf = pool.acquire();
+        try {
+            DnsCodec.encodeQuery(buf, next, nextName(), DnsCodec.TYPE_A);
+            return DnsCodec.questionHash(buf.flip());
+        } finally {
+            pool.release(buf);
+        }
+    }
+
+    @Benchmark
+    public Boolean loopbackRoundTrip() {
+        return client.query(nextName(), DnsCodec.TYPE_A, server, 1000, exists).join();
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.bench;
+
+import de.leycm.dnsniper.dns.DnsScanResult;
+import de.leycm.dnsniper.scanner.DnsScannerImpl;
+import de.leycm.dnsniper.scanner.SubdomainScannerImpl;
+import de.leycm.dnsniper.util.AsyncDnsClient;
+import de.leycm.dnsniper.util.DnsCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the DNS scanners and the raw client against a {@link LoopbackDnsServer}, so the
+ * numbers do not depend on the resolvers or the network of the machine.
+ * <p>
+ * The zone holds {@code hosts} names {@code h0..hN}; the subdomain wordlist asks for twice as
+ * many, so half of the candidates do not exist. {@code latencyMs} delays every answer to
+ * show how well the scanners overlap their lookups.
+ * Run with {@code ./gradlew :common:jmh}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class LoopbackDnsBenchmark {
+
+    private static final String ZONE = "bench.test";
+
+    @Param({"0", "20"})
+    public int latencyMs;
+
+    @Param({"2000"})
+    public int hosts;
+
+    private LoopbackDnsServer server;
+    private Path wordlist;
+    private AsyncDnsClient client;
+    private DnsScannerImpl dnsScanner;
+    private SubdomainScannerImpl subdomainScanner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StringBuilder zone = new StringBuilder()
+                .append("$ORIGIN ").append(ZONE).append(".\n")
+                .append("$TTL 300\n")
+                .append("@ SOA ns1 hostmaster 1 3600 600 86400 60\n")
+                .append("@ NS ns1\n")
+                .append("@ MX 10 mail\n")
+                .append("@ TXT \"v=spf1 -all\"\n")
+                .append("ns1 A 127.0.0.1\n")
+                .append("mail A 127.0.0.2\n");
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < hosts; i++) {
+            zone.append('h').append(i).append(" A 10.0.").append((i >> 8) & 0xFF).append('.').append(i & 0xFF).append('\n');
+        }
+        for (int i = 0; i < hosts * 2; i++) words.append('h').append(i).append('\n');
+
+        server = new LoopbackDnsServer().loadZone(new StringReader(zone.toString()), "");
+        server.setLatency(latencyMs, latencyMs);
+        List<InetSocketAddress> resolvers = List.of(server.start());
+
+        wordlist = Files.createTempFile("loopback-wordlist", ".txt");
+        Files.writeString(wordlist, words);
+
+        client = new AsyncDnsClient(resolvers, 2000);
+        dnsScanner = new DnsScannerImpl(DnsScannerImpl.DEFAULT_MAX_CONCURRENT_LOOKUPS, null, resolvers);
+        subdomainScanner = new SubdomainScannerImpl(null, wordlist.toString(), 1024, Duration.ofSeconds(2));
+        subdomainScanner.setResolvers(resolvers);
+        // measure brute force only; the loopback zone refuses transfers and serves no NSEC
+        subdomainScanner.setStrategies(EnumSet.of(SubdomainScannerImpl.Strategy.WORDLIST));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        subdomainScanner.shutdown();
+        dnsScanner.shutdown();
+        client.close();
+        server.close();
+        Files.deleteIfExists(wordlist);
+    }
+
+    /**
+     * One scan of all record types of the zone apex.
+     */
+    @Benchmark
+    public DnsScanResult dnsScan() {
+        return dnsScanner.scan(ZONE);
+    }
+
+    /**
+     * Brute-forces the generated wordlist against the zone.
+     */
+    @Benchmark
+    public List<String> subdomainScan() {
+        return subdomainScanner.scanDomain(ZONE);
+    }
+
+    /**
+     * Sends one A query per host at once and waits for all answers.
+     */
+    @Benchmark
+    public int clientBurst() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[hosts];
+        for (int i = 0; i < hosts; i++) {
+            futures[i] = client.query("h" + i + "." + ZONE, DnsCodec.TYPE_A, DnsCodec::answerCount);
+        }
+        CompletableFuture.allOf(futures).join();
+        return futures.length;
+    }
+}
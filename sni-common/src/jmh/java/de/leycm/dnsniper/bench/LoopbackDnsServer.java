@@ -0,0 +1,957 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.bench;
+
+import de.leycm.dnsniper.dns.CompactDnsRecord;
+import de.leycm.dnsniper.dns.DnsRecord;
+import de.leycm.dnsniper.util.DnsCodec;
+import de.leycm.dnsniper.util.DnsMessage;
+import de.leycm.dnsniper.util.ZoneTransfer;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process authoritative DNS server on {@code 127.0.0.1}, for benchmarks and load tests
+ * that must not depend on real resolvers.
+ * <p>
+ * Zones are loaded from a simplified master file (RFC 1035 section 5) or added record by
+ * record. The server answers authoritatively for every zone with an SOA record:
+ * <ul>
+ *     <li>matching records, following CNAMEs within its zones</li>
+ *     <li>NXDOMAIN or NODATA with the zone's SOA in the authority section</li>
+ *     <li>wildcard records ({@code *.example.com}) for names that do not exist (RFC 4592)</li>
+ *     <li>referrals for subzones delegated with NS records</li>
+ *     <li>REFUSED for names outside its zones</li>
+ *     <li>optionally, zone transfers and an NSEC chain for enumeration tests</li>
+ * </ul>
+ * UDP responses honour the EDNS0 payload size of the query and are truncated if they do not
+ * fit; the same port serves DNS over TCP, so clients can retry truncated answers.
+ * </p>
+ * <p>
+ * For load tests, {@link #setLatency(int, int)}, {@link #setDropRate(double)} and
+ * {@link #setTruncateRate(double)} simulate slow, lossy or constrained paths. A single reader
+ * thread decodes queries and encodes answers from pre-encoded records, which serves tens of
+ * thousands of queries per second.
+ * </p>
+ * <pre>{@code
+ * try (LoopbackDnsServer server = LoopbackDnsServer.fromZoneFile(Path.of("bench.zone"))) {
+ *     AsyncDnsClient client = new AsyncDnsClient(List.of(server.start()), 1000);
+ *     ...
+ * }
+ * }</pre>
+ */
+public final class LoopbackDnsServer implements AutoCloseable {
+
+    private static final int RCODE_FORMERR = 1;
+    private static final int RCODE_REFUSED = 5;
+    private static final int MAX_CNAME_CHAIN = 8;
+    private static final int EDNS_PAYLOAD_SIZE = 1232;
+    private static final int TYPE_RRSIG = 46;
+    private static final int TYPE_NSEC = 47;
+    private static final int NSEC_TTL = 300;
+    private static final int TRANSFER_MESSAGE_SIZE = 16 * 1024;
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<String, String[]> nsecChains = new ConcurrentHashMap<>();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder tcpQueries = new LongAdder();
+
+    private volatile int minLatencyMs;
+    private volatile int maxLatencyMs;
+    private volatile double dropRate;
+    private volatile double truncateRate;
+    private volatile boolean zoneTransfer;
+    private volatile boolean nsec;
+
+    private DatagramChannel udp;
+    private ServerSocketChannel tcp;
+    private ScheduledExecutorService delayed;
+    private volatile boolean running;
+
+    /**
+     * Creates a server without any zone.
+     */
+    public LoopbackDnsServer() {
+    }
+
+    /**
+     * Creates a server serving the zones of a master file.
+     *
+     * @param zoneFile the file, see {@link #loadZone(Reader, String)}
+     * @return the server, not yet started
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static @NotNull LoopbackDnsServer fromZoneFile(@NotNull Path zoneFile) throws IOException {
+        LoopbackDnsServer server = new LoopbackDnsServer();
+        server.loadZone(zoneFile);
+        return server;
+    }
+
+    /**
+     * Loads a master file; relative names are relative to the root until a {@code $ORIGIN}.
+     *
+     * @param zoneFile the file
+     * @return this server
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    @Contract("_ -> this")
+    public @NotNull LoopbackDnsServer loadZone(@NotNull Path zoneFile) throws IOException {
+        try (Reader reader = Files.newBufferedReader(zoneFile, StandardCharsets.UTF_8)) {
+            return loadZone(reader, "");
+        }
+    }
+
+    /**
+     * Loads records in a simplified master file format:
+     * <pre>
+     * $ORIGIN example.com.
+     * $TTL 300
+     * @        SOA   ns1 hostmaster 1 3600 600 86400 60
+     * @        NS    ns1
+     * ns1      A     127.0.0.1
+     * www  60  A     10.0.0.1
+     * *.dev    A     10.0.0.2           ; wildcard
+     * mail     MX    10 mx.example.net.
+     * txt      TXT   "v=spf1 -all" "second string"
+     * </pre>
+     * Names without a trailing dot are relative to the origin, {@code @} is the origin itself,
+     * and a line starting with whitespace repeats the previous owner. The class {@code IN}
+     * may be given and is ignored, parentheses may span an entry over several lines, and
+     * {@code ;} starts a comment. Supported types are A, AAAA, NS, CNAME, MX, TXT and SOA.
+     *
+     * @param zone   the master file content
+     * @param origin the initial origin
+     * @return this server
+     * @throws IOException if the content cannot be read or is malformed
+     */
+    @Contract("_, _ -> this")
+    public @NotNull LoopbackDnsServer loadZone(@NotNull Reader zone, @NotNull String origin) throws IOException {
+        BufferedReader reader = zone instanceof BufferedReader b ? b : new BufferedReader(zone);
+        String currentOrigin = canonical(origin);
+        long defaultTtl = 3600;
+        String owner = null;
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            String entry = stripComment(line);
+            // an open parenthesis continues the entry on the following lines
+            while (entry.indexOf('(') >= 0 && entry.indexOf(')') < 0) {
+                String more = reader.readLine();
+                if (more == null) throw new IOException("Unbalanced parenthesis at line " + lineNo);
+                lineNo++;
+                entry = entry + " " + stripComment(more);
+            }
+            entry = entry.replace('(', ' ').replace(')', ' ');
+            if (entry.isBlank()) continue;
+
+            List<String> tokens = tokenize(entry);
+            try {
+                if (tokens.get(0).equalsIgnoreCase("$ORIGIN")) {
+                    currentOrigin = absolute(tokens.get(1), currentOrigin);
+                    continue;
+                }
+                if (tokens.get(0).equalsIgnoreCase("$TTL")) {
+                    defaultTtl = Long.parseLong(tokens.get(1));
+                    continue;
+                }
+                int i = 0;
+                if (!Character.isWhitespace(entry.charAt(0))) owner = absolute(tokens.get(i++), currentOrigin);
+                if (owner == null) throw new IllegalArgumentException("No owner name");
+                long ttl = defaultTtl;
+                if (Character.isDigit(tokens.get(i).charAt(0))) ttl = Long.parseLong(tokens.get(i++));
+                if (tokens.get(i).equalsIgnoreCase("IN")) i++;
+                String type = tokens.get(i++).toUpperCase(Locale.ROOT);
+                addRecord(owner, ttl, type, tokens.subList(i, tokens.size()), currentOrigin);
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed zone entry at line " + lineNo + ": " + line.trim(), e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds one record.
+     *
+     * @param name the absolute owner name, with or without trailing dot
+     * @param ttl  the TTL in seconds
+     * @param type the type mnemonic, e.g. {@code "MX"}
+     * @param data the RDATA in master file syntax, e.g. {@code "10 mx.example.com."};
+     *             names in it are absolute
+     * @return this server
+     * @throws IllegalArgumentException if the type is unsupported or the data malformed
+     */
+    @Contract("_, _, _, _ -> this")
+    public @NotNull LoopbackDnsServer addRecord(@NotNull String name, long ttl, @NotNull String type, @NotNull String data) {
+        addRecord(canonical(name), ttl, type.toUpperCase(Locale.ROOT), tokenize(data), "");
+        return this;
+    }
+
+    /**
+     * Binds the UDP and TCP sockets to the same ephemeral port on {@code 127.0.0.1} and starts
+     * serving. Calling it again returns the address of the running server.
+     *
+     * @return the address to send queries to
+     * @throws IOException if the sockets cannot be bound
+     */
+    public synchronized @NotNull InetSocketAddress start() throws IOException {
+        if (running) return address();
+        InetAddress loopback = InetAddress.getByAddress(new byte[]{127, 0, 0, 1});
+        IOException last = null;
+        for (int attempt = 0; attempt < 16 && tcp == null; attempt++) {
+            DatagramChannel u = DatagramChannel.open().bind(new InetSocketAddress(loopback, 0));
+            try {
+                tcp = ServerSocketChannel.open().bind(u.getLocalAddress(), 1024);
+                udp = u;
+            } catch (IOException e) {
+                // the port is taken for TCP; try another one
+                u.close();
+                last = e;
+            }
+        }
+        if (tcp == null) throw last;
+        udp.setOption(StandardSocketOptions.SO_RCVBUF, 4 << 20);
+        udp.setOption(StandardSocketOptions.SO_SNDBUF, 4 << 20);
+        delayed = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loopback-dns-delay");
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+        Thread.ofPlatform().name("loopback-dns-udp").daemon().start(this::serveUdp);
+        Thread.ofPlatform().name("loopback-dns-tcp").daemon().start(this::acceptTcp);
+        return address();
+    }
+
+    /**
+     * @return the address of the running server
+     * @throws IllegalStateException if the server is not started
+     */
+    public @NotNull InetSocketAddress address() {
+        if (udp == null) throw new IllegalStateException("Server not started");
+        try {
+            return (InetSocketAddress) udp.getLocalAddress();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Delays every response by a random time in {@code [minMs, maxMs]}.
+     *
+     * @param minMs the shortest delay
+     * @param maxMs the longest delay
+     */
+    public void setLatency(int minMs, int maxMs) {
+        if (minMs < 0 || maxMs < minMs) throw new IllegalArgumentException("0 <= minMs <= maxMs required");
+        this.minLatencyMs = minMs;
+        this.maxLatencyMs = maxMs;
+    }
+
+    /**
+     * @param rate the fraction of UDP queries left unanswered, 0-1
+     */
+    public void setDropRate(double rate) {
+        this.dropRate = checkRate(rate);
+    }
+
+    /**
+     * @param rate the fraction of UDP responses truncated even though they fit, 0-1
+     */
+    public void setTruncateRate(double rate) {
+        this.truncateRate = checkRate(rate);
+    }
+
+    /**
+     * @param allowed {@code true} to answer AXFR queries over TCP for every zone; refused by default
+     */
+    public void setZoneTransfer(boolean allowed) {
+        this.zoneTransfer = allowed;
+    }
+
+    /**
+     * Answers NSEC queries for existing names with an unsigned NSEC chain over the names of
+     * each zone, as a DNSSEC zone signed with plain NSEC would. Disabled by default.
+     *
+     * @param enabled {@code true} to answer NSEC queries
+     */
+    public void setNsec(boolean enabled) {
+        this.nsec = enabled;
+    }
+
+    /**
+     * @return the counters of the server
+     */
+    public @NotNull Stats stats() {
+        return new Stats(queries.sum(), tcpQueries.sum(), dropped.sum(), truncated.sum());
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        try {
+            if (udp != null) udp.close();
+            if (tcp != null) tcp.close();
+        } catch (IOException ignored) {}
+        if (delayed != null) delayed.shutdownNow();
+    }
+
+    /**
+     * Counters of a {@link LoopbackDnsServer}.
+     *
+     * @param queries    the queries received over UDP and TCP
+     * @param tcpQueries the queries received over TCP
+     * @param dropped    the UDP queries left unanswered on purpose
+     * @param truncated  the UDP responses sent with the TC bit
+     */
+    public record Stats(long queries, long tcpQueries, long dropped, long truncated) {}
+
+    // ---- serving ----
+
+    private void serveUdp() {
+        ByteBuffer in = ByteBuffer.allocateDirect(0xFFFF);
+        ByteBuffer out = ByteBuffer.allocate(0xFFFF);
+        while (running) {
+            SocketAddress from;
+            try {
+                from = udp.receive(in.clear());
+            } catch (IOException e) {
+                break; // closed
+            }
+            queries.increment();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (dropRate > 0 && random.nextDouble() < dropRate) {
+                dropped.increment();
+                continue;
+            }
+            in.flip();
+            if (!respond(in, out.clear())) continue;
+            int udpLimit = Math.max(DnsCodec.CLASSIC_UDP_SIZE, ednsPayload(in));
+            if (out.position() > udpLimit || (truncateRate > 0 && random.nextDouble() < truncateRate)) {
+                truncate(out, hasOpt(in));
+                truncated.increment();
+            }
+            send(out.flip(), buf -> udp.send(buf, from));
+        }
+    }
+
+    private void acceptTcp() {
+        while (running) {
+            SocketChannel conn;
+            try {
+                conn = tcp.accept();
+            } catch (IOException e) {
+                break; // closed
+            }
+            Thread.ofVirtual().start(() -> serveTcp(conn));
+        }
+    }
+
+    private void serveTcp(SocketChannel conn) {
+        ByteBuffer length = ByteBuffer.allocate(2);
+        ByteBuffer in = ByteBuffer.allocate(0xFFFF);
+        ByteBuffer out = ByteBuffer.allocate(2 + 0xFFFF);
+        try (conn) {
+            while (running) {
+                if (!readFully(conn, length.clear())) return;
+                in.clear().limit(Short.toUnsignedInt(length.getShort(0)));
+                if (!readFully(conn, in)) return;
+                queries.increment();
+                tcpQueries.increment();
+                in.flip();
+                String zone = zoneTransfer ? transferZone(in) : null;
+                if (zone != null) {
+                    transfer(conn, in, zone);
+                    continue;
+                }
+                out.clear().position(2);
+                if (!respond(in, out)) continue;
+                out.putShort(0, (short) (out.position() - 2));
+                send(out.flip(), buf -> {
+                    synchronized (conn) {
+                        while (buf.hasRemaining()) conn.write(buf);
+                    }
+                });
+            }
+        } catch (IOException ignored) {
+            // client went away
+        }
+    }
+
+    /**
+     * @return the zone an AXFR query asks for, or {@code null} if it is no AXFR query for a served zone
+     */
+    private @Nullable String transferZone(ByteBuffer q) {
+        try {
+            StringBuilder sb = new StringBuilder(64);
+            int off = readQuestionName(q, sb);
+            if (Short.toUnsignedInt(q.getShort(off + 1)) != ZoneTransfer.TYPE_AXFR) return null;
+            Node apex = nodes.get(sb.toString());
+            return apex != null && apex.rrsets.containsKey(DnsCodec.TYPE_SOA) ? sb.toString() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Streams all records of a zone, between two copies of its SOA, in messages of up to
+     * {@value #TRANSFER_MESSAGE_SIZE} bytes.
+     */
+    private void transfer(SocketChannel conn, ByteBuffer q, String zone) throws IOException {
+        Node apex = nodes.get(zone);
+        byte[] soa = concat(apex.owner, apex.rrsets.get(DnsCodec.TYPE_SOA).getFirst());
+        List<byte[]> records = new ArrayList<>();
+        records.add(soa);
+        for (Map.Entry<String, Node> e : nodes.entrySet()) {
+            Node node = e.getValue();
+            if (node.empty() || !zone.equals(zoneOf(e.getKey()))) continue;
+            for (Map.Entry<Integer, List<byte[]>> rrset : node.rrsets.entrySet()) {
+                if (node == apex && rrset.getKey() == DnsCodec.TYPE_SOA) continue;
+                for (byte[] rr : rrset.getValue()) records.add(concat(node.owner, rr));
+            }
+        }
+        records.add(soa);
+
+        int questionEnd = readQuestionName(q, new StringBuilder()) + 5;
+        ByteBuffer msg = ByteBuffer.allocate(2 + 0xFFFF);
+        int i = 0;
+        while (i < records.size()) {
+            msg.clear().position(2);
+            msg.putShort(q.getShort(0)).putShort((short) 0x8400).putShort((short) 1).putInt(0).putShort((short) 0);
+            msg.put(q.slice(DnsCodec.HEADER_LENGTH, questionEnd - DnsCodec.HEADER_LENGTH));
+            int count = 0;
+            while (i < records.size() && (count == 0 || msg.position() + records.get(i).length <= TRANSFER_MESSAGE_SIZE)) {
+                msg.put(records.get(i++));
+                count++;
+            }
+            msg.putShort(2 + 6, (short) count);
+            msg.putShort(0, (short) (msg.position() - 2));
+            msg.flip();
+            synchronized (conn) {
+                while (msg.hasRemaining()) conn.write(msg);
+            }
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    private static boolean readFully(SocketChannel conn, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (conn.read(buf) < 0) return false;
+        }
+        return true;
+    }
+
+    private void send(ByteBuffer response, Sender sender) {
+        int min = minLatencyMs;
+        int max = maxLatencyMs;
+        if (max == 0) {
+            try {
+                sender.send(response);
+            } catch (IOException ignored) {}
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(response.remaining()).put(response).flip();
+        long delay = min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1L);
+        try {
+            delayed.schedule(() -> {
+                try {
+                    sender.send(copy);
+                } catch (IOException ignored) {}
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ignored) {
+            // shut down
+        }
+    }
+
+    @FunctionalInterface
+    private interface Sender {
+        void send(ByteBuffer response) throws IOException;
+    }
+
+    /**
+     * Writes the response to the query starting at {@code out}'s position.
+     *
+     * @return {@code false} if the message is not a query and gets no response
+     */
+    private boolean respond(ByteBuffer q, ByteBuffer out) {
+        if (q.limit() < DnsCodec.HEADER_LENGTH || DnsCodec.isResponse(q)) return false;
+        int start = out.position();
+        out.putShort(q.getShort(0));
+        out.putShort((short) (0x8000 | (q.getShort(2) & 0x0100))); // QR, RD copied
+        out.putLong(0);
+
+        int questionEnd;
+        String qname;
+        int qtype;
+        try {
+            StringBuilder sb = new StringBuilder(64);
+            int off = readQuestionName(q, sb);
+            qname = sb.toString();
+            qtype = Short.toUnsignedInt(q.getShort(off + 1));
+            questionEnd = off + 5;
+            if (questionEnd > q.limit()) throw new IllegalArgumentException("Truncated question");
+        } catch (RuntimeException e) {
+            out.putShort(start + 2, (short) (out.getShort(start + 2) | RCODE_FORMERR));
+            return true;
+        }
+
+        out.putShort(start + 4, (short) 1);
+        out.put(q.slice(DnsCodec.HEADER_LENGTH, questionEnd - DnsCodec.HEADER_LENGTH));
+        answer(qname, qtype, out, start);
+
+        // echo EDNS0 if the query used it
+        if (hasOpt(q)) {
+            out.put((byte) 0).putShort((short) DnsCodec.TYPE_OPT).putShort((short) EDNS_PAYLOAD_SIZE).putInt(0).putShort((short) 0);
+            out.putShort(start + 10, (short) (out.getShort(start + 10) + 1));
+        }
+        return true;
+    }
+
+    /**
+     * Reads the question name in lower case.
+     *
+     * @return the offset of the name's terminating zero byte
+     */
+    private static int readQuestionName(ByteBuffer q, StringBuilder sb) {
+        if (Short.toUnsignedInt(q.getShort(4)) != 1) throw new IllegalArgumentException("QDCOUNT != 1");
+        int off = DnsCodec.HEADER_LENGTH;
+        int len;
+        while ((len = q.get(off) & 0xFF) != 0) {
+            if ((len & 0xC0) != 0) throw new IllegalArgumentException("Compressed question");
+            if (!sb.isEmpty()) sb.append('.');
+            for (int i = off + 1; i <= off + len; i++) sb.append((char) Character.toLowerCase(q.get(i) & 0xFF));
+            off += len + 1;
+        }
+        return off;
+    }
+
+    private void answer(String qname, int qtype, ByteBuffer out, int start) {
+        String zone = zoneOf(qname);
+        // allowed transfers are streamed by serveTcp before they get here
+        if (zone == null || qtype == ZoneTransfer.TYPE_AXFR) {
+            setRcode(out, start, RCODE_REFUSED);
+            return;
+        }
+        Node cut = delegation(qname, zone);
+        if (cut != null) {
+            // referral: not authoritative, NS records of the child zone in the authority section
+            int n = writeRrset(out, cut.owner, cut.rrsets.get(DnsCodec.TYPE_NS));
+            out.putShort(start + 8, (short) n);
+            return;
+        }
+        setAuthoritative(out, start);
+
+        String name = qname;
+        int answers = 0;
+        boolean owned = true; // the first owner is the question name, written as a pointer
+        for (int hop = 0; hop <= MAX_CNAME_CHAIN; hop++) {
+            Node node = nodes.get(name);
+            if (node == null || node.empty()) {
+                Node wildcard = node == null ? wildcardFor(name, zone) : null;
+                if (wildcard == null) {
+                    if (answers == 0 && node == null) setRcode(out, start, DnsMessage.RCODE_NXDOMAIN);
+                    if (answers == 0) writeSoa(out, start, zone);
+                    break;
+                }
+                node = wildcard.synthesize(name);
+            }
+            List<byte[]> rrset = node.rrsets.get(qtype);
+            if (rrset == null && qtype == TYPE_NSEC && nsec && nodes.get(name) == node) rrset = nsecRecord(name, zone, node);
+            if (rrset != null) {
+                answers += writeRrset(out, owned ? null : node.owner, rrset);
+                break;
+            }
+            List<byte[]> cname = qtype == DnsCodec.TYPE_CNAME ? null : node.rrsets.get(DnsCodec.TYPE_CNAME);
+            if (cname == null) {
+                if (answers == 0) writeSoa(out, start, zone); // NODATA
+                break;
+            }
+            answers += writeRrset(out, owned ? null : node.owner, cname);
+            owned = false;
+            name = targetOf(cname.get(0));
+            zone = zoneOf(name);
+            if (zone == null) break; // out of our zones; the resolver chases it
+        }
+        out.putShort(start + 6, (short) answers);
+    }
+
+    private void writeSoa(ByteBuffer out, int start, String zone) {
+        Node apex = nodes.get(zone);
+        int n = writeRrset(out, apex.owner, apex.rrsets.get(DnsCodec.TYPE_SOA));
+        out.putShort(start + 8, (short) n);
+    }
+
+    /**
+     * @param owner the wire owner name, or {@code null} to point at the question name
+     */
+    private static int writeRrset(ByteBuffer out, byte @Nullable [] owner, List<byte[]> rrset) {
+        for (byte[] rr : rrset) {
+            if (owner == null) out.putShort((short) (0xC000 | DnsCodec.HEADER_LENGTH));
+            else out.put(owner);
+            out.put(rr);
+        }
+        return rrset.size();
+    }
+
+    private static void truncate(ByteBuffer out, boolean opt) {
+        // keep header and question, drop every record but the OPT echo
+        int questionEnd = DnsCodec.HEADER_LENGTH;
+        while (out.get(questionEnd) != 0) questionEnd += (out.get(questionEnd) & 0xFF) + 1;
+        questionEnd += 5;
+        out.position(questionEnd);
+        out.putShort(2, (short) (out.getShort(2) | 0x0200));
+        out.putShort(6, (short) 0).putShort(8, (short) 0).putShort(10, (short) 0);
+        if (opt) {
+            out.put((byte) 0).putShort((short) DnsCodec.TYPE_OPT).putShort((short) EDNS_PAYLOAD_SIZE).putInt(0).putShort((short) 0);
+            out.putShort(10, (short) 1);
+        }
+    }
+
+    private static void setRcode(ByteBuffer out, int start, int rcode) {
+        out.putShort(start + 2, (short) ((out.getShort(start + 2) & ~0xF) | rcode));
+    }
+
+    private static void setAuthoritative(ByteBuffer out, int start) {
+        out.putShort(start + 2, (short) (out.getShort(start + 2) | 0x0400));
+    }
+
+    /**
+     * @return the UDP payload size advertised by the query's OPT record, or {@code 0} if none
+     */
+    private static int ednsPayload(ByteBuffer q) {
+        int off = optOffset(q);
+        return off < 0 ? 0 : Short.toUnsignedInt(q.getShort(off + 3));
+    }
+
+    private static boolean hasOpt(ByteBuffer q) {
+        return optOffset(q) >= 0;
+    }
+
+    private static int optOffset(ByteBuffer q) {
+        try {
+            if (q.getShort(10) == 0) return -1;
+            int off = DnsCodec.HEADER_LENGTH;
+            while (q.get(off) != 0) off += (q.get(off) & 0xFF) + 1;
+            off += 5;
+            // queries carry nothing but the OPT record after the question
+            return q.get(off) == 0 && q.getShort(off + 1) == DnsCodec.TYPE_OPT ? off : -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    // ---- zone data ----
+
+    /**
+     * Builds the NSEC record of an existing name, pointing at the next name of the zone in
+     * canonical order and listing the types at the name.
+     */
+    private @Nullable List<byte[]> nsecRecord(String name, String zone, Node node) {
+        String[] chain = nsecChains.computeIfAbsent(zone, this::nsecChain);
+        int i = Arrays.binarySearch(chain, name, LoopbackDnsServer::canonicalCompare);
+        if (i < 0) return null;
+        byte[] next = wireName(chain[(i + 1) % chain.length]);
+
+        int maxType = TYPE_NSEC;
+        for (int type : node.rrsets.keySet()) {
+            if (type < 256) maxType = Math.max(maxType, type);
+        }
+        // window block 0 only (RFC 4034 section 4.1.2)
+        byte[] bitmap = new byte[maxType / 8 + 1];
+        for (int type : node.rrsets.keySet()) {
+            if (type < 256) bitmap[type / 8] |= (byte) (0x80 >>> (type % 8));
+        }
+        bitmap[TYPE_RRSIG / 8] |= (byte) (0x80 >>> (TYPE_RRSIG % 8));
+        bitmap[TYPE_NSEC / 8] |= (byte) (0x80 >>> (TYPE_NSEC % 8));
+
+        int rdlength = next.length + 2 + bitmap.length;
+        ByteBuffer rr = ByteBuffer.allocate(10 + rdlength)
+                .putShort((short) TYPE_NSEC).putShort((short) 1).putInt(NSEC_TTL).putShort((short) rdlength)
+                .put(next).put((byte) 0).put((byte) bitmap.length).put(bitmap);
+        return List.of(rr.array());
+    }
+
+    /**
+     * @return the names of the zone that own records, in canonical order (RFC 4034 section 6.1)
+     */
+    private String[] nsecChain(String zone) {
+        List<String> names = new ArrayList<>();
+        nodes.forEach((name, node) -> {
+            if (!node.empty() && zone.equals(zoneOf(name))) names.add(name);
+        });
+        names.sort(LoopbackDnsServer::canonicalCompare);
+        return names.toArray(String[]::new);
+    }
+
+    /**
+     * Compares lower-case names label by label, starting with the rightmost label.
+     */
+    private static int canonicalCompare(String a, String b) {
+        int ea = a.length();
+        int eb = b.length();
+        while (ea > 0 && eb > 0) {
+            int sa = a.lastIndexOf('.', ea - 1) + 1;
+            int sb = b.lastIndexOf('.', eb - 1) + 1;
+            int c = CharSequence.compare(a.subSequence(sa, ea), b.subSequence(sb, eb));
+            if (c != 0) return c;
+            ea = sa - 1;
+            eb = sb - 1;
+        }
+        return Boolean.compare(ea > 0, eb > 0);
+    }
+
+    /**
+     * @return the apex of the closest zone containing the name, or {@code null}
+     */
+    private @Nullable String zoneOf(String name) {
+        for (String n = name; ; n = parent(n)) {
+            Node node = nodes.get(n);
+            if (node != null && node.rrsets.containsKey(DnsCodec.TYPE_SOA)) return n;
+            if (n.isEmpty()) return null;
+        }
+    }
+
+    /**
+     * @return the node holding the NS records of a delegation between the zone apex and the
+     *         name, or {@code null} if the name is served by the zone itself
+     */
+    private @Nullable Node delegation(String name, String zone) {
+        Node cut = null;
+        // the topmost cut wins; anything below it belongs to the child zone
+        for (String n = name; n.length() > zone.length(); n = parent(n)) {
+            Node node = nodes.get(n);
+            if (node != null && node.rrsets.containsKey(DnsCodec.TYPE_NS)) cut = node;
+        }
+        return cut;
+    }
+
+    /**
+     * Finds the wildcard covering a name that does not exist: {@code *.} followed by the
+     * closest existing ancestor (the closest encloser).
+     */
+    private @Nullable Node wildcardFor(String name, String zone) {
+        for (String n = parent(name); ; n = parent(n)) {
+            if (nodes.containsKey(n) || n.equals(zone)) {
+                return nodes.get(n.isEmpty() ? "*" : "*." + n);
+            }
+            if (n.isEmpty()) return null;
+        }
+    }
+
+    private synchronized void addRecord(String owner, long ttl, String type, List<String> data, String origin) {
+        int code = CompactDnsRecord.typeCode(type);
+        ByteArrayOutputStream rdata = new ByteArrayOutputStream(64);
+        switch (code) {
+            case DnsCodec.TYPE_A, DnsCodec.TYPE_AAAA -> rdata.writeBytes(
+                    CompactDnsRecord.of(new DnsRecord(owner, type, ttl, single(data))).rdata());
+            case DnsCodec.TYPE_NS, DnsCodec.TYPE_CNAME -> rdata.writeBytes(wireName(absolute(single(data), origin)));
+            case DnsCodec.TYPE_MX -> {
+                if (data.size() != 2) throw new IllegalArgumentException("MX needs preference and exchange");
+                int pref = Integer.parseInt(data.get(0));
+                rdata.write(pref >>> 8);
+                rdata.write(pref);
+                rdata.writeBytes(wireName(absolute(data.get(1), origin)));
+            }
+            case DnsCodec.TYPE_TXT -> {
+                if (data.isEmpty()) throw new IllegalArgumentException("TXT needs at least one string");
+                for (String s : data) {
+                    byte[] text = s.getBytes(StandardCharsets.UTF_8);
+                    if (text.length > 255) throw new IllegalArgumentException("TXT string longer than 255 bytes");
+                    rdata.write(text.length);
+                    rdata.writeBytes(text);
+                }
+            }
+            case DnsCodec.TYPE_SOA -> {
+                if (data.size() != 7) throw new IllegalArgumentException("SOA needs 7 fields");
+                rdata.writeBytes(wireName(absolute(data.get(0), origin)));
+                rdata.writeBytes(wireName(absolute(data.get(1), origin)));
+                for (int i = 2; i < 7; i++) {
+                    long v = Long.parseLong(data.get(i));
+                    rdata.write((int) (v >>> 24));
+                    rdata.write((int) (v >>> 16));
+                    rdata.write((int) (v >>> 8));
+                    rdata.write((int) v);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported record type: " + type);
+        }
+        byte[] rd = rdata.toByteArray();
+        byte[] rr = ByteBuffer.allocate(10 + rd.length)
+                .putShort((short) code).putShort((short) 1).putInt((int) ttl).putShort((short) rd.length).put(rd)
+                .array();
+
+        String key = owner.toLowerCase(Locale.ROOT);
+        nsecChains.clear();
+        nodes.computeIfAbsent(key, k -> new Node(wireName(owner))).rrsets
+                .computeIfAbsent(code, c -> new CopyOnWriteArrayList<>()).add(rr);
+        // ancestors exist as empty non-terminals, so names between them and the zone are NODATA, not NXDOMAIN
+        for (String n = parent(key); !n.isEmpty(); n = parent(n)) {
+            if (nodes.putIfAbsent(n, new Node(wireName(n))) != null) break;
+        }
+    }
+
+    private static String targetOf(byte[] cnameRr) {
+        StringBuilder sb = new StringBuilder(64);
+        int off = 10;
+        int len;
+        while ((len = cnameRr[off] & 0xFF) != 0) {
+            if (!sb.isEmpty()) sb.append('.');
+            for (int i = off + 1; i <= off + len; i++) sb.append((char) Character.toLowerCase(cnameRr[i] & 0xFF));
+            off += len + 1;
+        }
+        return sb.toString();
+    }
+
+    private static String parent(String name) {
+        int dot = name.indexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1);
+    }
+
+    private static String canonical(String name) {
+        String n = name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+        return n.equals(".") ? "" : n;
+    }
+
+    private static String absolute(String name, String origin) {
+        if (name.equals("@")) return origin;
+        if (name.endsWith(".")) return canonical(name);
+        return origin.isEmpty() ? name : name + "." + origin;
+    }
+
+    private static byte[] wireName(String name) {
+        ByteBuffer buf = ByteBuffer.allocate(DnsCodec.MAX_NAME_LENGTH + 1);
+        int start = 0;
+        int len = name.length();
+        while (start < len) {
+            int end = name.indexOf('.', start);
+            if (end < 0) end = len;
+            int n = end - start;
+            if (n == 0 || n > 63) throw new IllegalArgumentException("Invalid label in " + name);
+            buf.put((byte) n);
+            for (int i = start; i < end; i++) buf.put((byte) name.charAt(i));
+            start = end + 1;
+        }
+        buf.put((byte) 0);
+        byte[] out = new byte[buf.position()];
+        buf.get(0, out);
+        return out;
+    }
+
+    private static String single(List<String> data) {
+        if (data.size() != 1) throw new IllegalArgumentException("Expected one value, got " + data);
+        return data.get(0);
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("rate must be within [0, 1]");
+        return rate;
+    }
+
+    private static String stripComment(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ';' && !quoted) return line.substring(0, i);
+        }
+        return line;
+    }
+
+    /**
+     * Splits on whitespace; a quoted string is one token without its quotes.
+     */
+    private static List<String> tokenize(String entry) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int n = entry.length();
+        while (i < n) {
+            char c = entry.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = entry.indexOf('"', i + 1);
+                if (end < 0) throw new IllegalArgumentException("Unterminated string");
+                tokens.add(entry.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < n && !Character.isWhitespace(entry.charAt(i))) i++;
+                tokens.add(entry.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * All records of one owner name, pre-encoded without the owner: TYPE, CLASS, TTL,
+     * RDLENGTH and RDATA.
+     */
+    private static final class Node {
+        final byte[] owner;
+        final Map<Integer, List<byte[]>> rrsets;
+
+        Node(byte[] owner) {
+            this(owner, new ConcurrentHashMap<>());
+        }
+
+        private Node(byte[] owner, Map<Integer, List<byte[]>> rrsets) {
+            this.owner = owner;
+            this.rrsets = rrsets;
+        }
+
+        boolean empty() {
+            return rrsets.isEmpty();
+        }
+
+        /**
+         * @return this wildcard's records under the given name
+         */
+        Node synthesize(String name) {
+            return new Node(wireName(name), rrsets);
+        }
+    }
+}
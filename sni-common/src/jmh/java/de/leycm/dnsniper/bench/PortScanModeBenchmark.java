@@ -0,0 +1,81 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.bench;
+
+import de.leycm.dnsniper.port.PortScanResult;
+import de.leycm.dnsniper.port.PortSet;
+import de.leycm.dnsniper.scanner.PortScannerImpl;
+import de.leycm.dnsniper.util.ExecutionMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ExecutionMode#PLATFORM} and {@link ExecutionMode#VIRTUAL} modes of the
+ * blocking {@link PortScannerImpl.Engine#EXECUTOR} engine on a loopback target.
+ * <p>
+ * One listener is opened on an ephemeral loopback port; every other port in the scanned
+ * window is closed, so the numbers reflect scheduling overhead rather than network latency.
+ * Run with {@code ./gradlew :common:jmh}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class PortScanModeBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ExecutionMode mode;
+
+    @Param({"4096"})
+    public int ports;
+
+    private InetAddress loopback;
+    private ServerSocket listener;
+    private Thread acceptor;
+    private PortScannerImpl scanner;
+    private PortSet window;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        loopback = InetAddress.getLoopbackAddress();
+        listener = new ServerSocket(0, 1024, loopback);
+        acceptor = Thread.ofPlatform().daemon().start(() -> {
+            while (!listener.isClosed()) {
+                try (Socket ignored = listener.accept()) {
+                    // close immediately
+                } catch (IOException ignored) {}
+            }
+        });
+        int open = listener.getLocalPort();
+        int low = Math.max(1, Math.min(open - ports / 2, 65535 - ports));
+        window = PortSet.range(low, low + ports - 1);
+        scanner = new PortScannerImpl(500, PortScannerImpl.Engine.EXECUTOR, mode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        scanner.shutdown();
+        listener.close();
+        acceptor.interrupt();
+    }
+
+    @Benchmark
+    public PortScanResult scanLoopback() {
+        return scanner.scanPorts(loopback, window);
+    }
+}
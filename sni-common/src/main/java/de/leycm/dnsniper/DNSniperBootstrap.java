@@ -11,14 +11,21 @@
 package de.leycm.dnsniper;
 
 import de.leycm.dnsniper.dns.DnsScanResult;
+import de.leycm.dnsniper.event.ScanEventSink;
+import de.leycm.dnsniper.port.CidrRange;
 import de.leycm.dnsniper.scanner.DnsScannerImpl;
 import de.leycm.dnsniper.scanner.PortScannerImpl;
+import de.leycm.dnsniper.port.PortResult;
 import de.leycm.dnsniper.port.PortScanResult;
+import de.leycm.dnsniper.port.PortSet;
 import de.leycm.dnsniper.scanner.SubdomainScannerImpl;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
@@ -73,6 +80,79 @@ public class DNSniperBootstrap implements DNSniperApi {
         return portScanner.scanAllPorts(address, portFilter);
     }
 
+    /**
+     * Scans the given set of TCP ports on the specified address.
+     *
+     * @param address the target {@link InetAddress} to scan
+     * @param ports   the {@link PortSet} to scan
+     * @return a {@link PortScanResult} containing the results of the selected ports
+     */
+    @Override
+    public PortScanResult scanPorts(InetAddress address, PortSet ports) {
+        return portScanner.scanPorts(address, ports);
+    }
+
+    /**
+     * Scans TCP ports on the specified address and streams each result as it completes.
+     *
+     * @param address    the target {@link InetAddress} to scan
+     * @param portFilter a {@link Predicate} to filter the ports to be scanned
+     * @param sink       a {@link Consumer} receiving each {@link PortResult}
+     */
+    @Override
+    public void streamPorts(InetAddress address, Predicate<Integer> portFilter, Consumer<PortResult> sink) {
+        portScanner.streamPorts(address, portFilter, sink);
+    }
+
+    /**
+     * Scans the given set of TCP ports and streams each result as it completes.
+     *
+     * @param address the target {@link InetAddress} to scan
+     * @param ports   the {@link PortSet} to scan
+     * @param sink    a {@link Consumer} receiving each {@link PortResult}
+     */
+    @Override
+    public void streamPorts(InetAddress address, PortSet ports, Consumer<PortResult> sink) {
+        portScanner.streamPorts(address, ports, sink);
+    }
+
+    /**
+     * Scans the given set of TCP ports on several hosts, interleaving probes across hosts.
+     *
+     * @param hosts the target addresses
+     * @param ports the {@link PortSet} to scan on every host
+     * @return the {@link PortScanResult} of each host
+     */
+    @Override
+    public Map<InetAddress, PortScanResult> scanHosts(Collection<InetAddress> hosts, PortSet ports) {
+        return portScanner.scanHosts(hosts, ports);
+    }
+
+    /**
+     * Scans the given set of TCP ports on every address of a CIDR block.
+     *
+     * @param range the {@link CidrRange} to scan
+     * @param ports the {@link PortSet} to scan on every host
+     * @return the {@link PortScanResult} of each host
+     */
+    @Override
+    public Map<InetAddress, PortScanResult> scanRange(CidrRange range, PortSet ports) {
+        return portScanner.scanRange(range, ports);
+    }
+
+    /**
+     * Installs the event sink on all scanners.
+     *
+     * @param sink the {@link ScanEventSink}, or {@link ScanEventSink#noop()} to disable events
+     */
+    @Override
+    public void setEventSink(ScanEventSink sink) {
+        ScanEventSink effective = sink != null ? sink : ScanEventSink.noop();
+        portScanner.setEventSink(effective);
+        dnsScanner.setEventSink(effective);
+        subdomainScanner.setEventSink(effective);
+    }
+
     @Override
     public DnsScanResult scanDnsEntry(String domain) {
         return dnsScanner.scan(domain);
@@ -87,11 +167,14 @@ public class DNSniperBootstrap implements DNSniperApi {
      * Shuts down this instance, unregistering the API implementation and releasing resources.
      * <p>
      * This method ensures that the API is properly unregistered and the associated
-     * {@link PortScannerImpl} is shut down to release any allocated resources.
+     * {@link PortScannerImpl}, {@link DnsScannerImpl} and {@link SubdomainScannerImpl} are shut
+     * down to release their threads, sockets and the wordlist file.
      * </p>
      */
     public void shutdown() {
         DNSniperApiProvider.unregister();
         portScanner.shutdown();
+        dnsScanner.shutdown();
+        subdomainScanner.shutdown();
     }
 }
@@ -0,0 +1,245 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.dns.DnsScanResult;
+import de.leycm.dnsniper.dns.NameServerCheckResult;
+import de.leycm.dnsniper.util.AsyncDnsClient;
+import de.leycm.dnsniper.util.DnsCodec;
+import de.leycm.dnsniper.util.DnsMessage;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends queries straight to the authoritative name servers of a zone instead of through
+ * recursive resolvers.
+ * <p>
+ * Queries are spread over the servers, each limited to a fixed rate: every query reserves
+ * the earliest free slot across all servers and waits for it without holding a thread.
+ * A server that times out gets no new queries for one timeout, so the others take over its
+ * share.
+ * </p>
+ * <p>
+ * A query falls back to the recursive resolvers of the client when the server is not
+ * authoritative for the answer (a referral into a delegated subzone, REFUSED, SERVFAIL or
+ * NOTAUTH), times out or fails with an I/O error. Any other failure, such as an exception
+ * thrown by the caller's handler, fails the query.
+ * </p>
+ */
+final class AuthoritativeResolver {
+
+    static final int PORT = 53;
+
+    private final AsyncDnsClient client;
+    private final Server[] servers;
+    private final long intervalNanos;
+    private final int timeoutMs;
+    private final LongAdder direct = new LongAdder();
+    private final LongAdder recursive = new LongAdder();
+
+    /**
+     * @param client              sends the direct queries and resolves recursively where they fail
+     * @param servers             the authoritative servers, at least one
+     * @param queriesPerSecond    the rate limit of each server
+     * @param timeoutMs           the time a server has to answer a query
+     */
+    AuthoritativeResolver(@NotNull AsyncDnsClient client, @NotNull List<InetSocketAddress> servers,
+                          int queriesPerSecond, int timeoutMs) {
+        if (servers.isEmpty()) throw new IllegalArgumentException("At least one server required");
+        if (queriesPerSecond <= 0) throw new IllegalArgumentException("queriesPerSecond > 0 required");
+        this.client = client;
+        this.servers = servers.stream().map(Server::new).toArray(Server[]::new);
+        this.intervalNanos = 1_000_000_000L / queriesPerSecond;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Finds the name servers of the zone a domain belongs to, walking up from the domain until
+     * a name has NS records, and keeps the addresses that answered an SOA probe.
+     *
+     * @param client    the client resolving the name servers
+     * @param domain    the domain
+     * @param timeoutMs the time a name server has to answer the probe
+     * @return the responsive server addresses, empty if none were found
+     */
+    static @NotNull CompletableFuture<List<InetSocketAddress>> discover(@NotNull AsyncDnsClient client,
+                                                                       @NotNull String domain, int timeoutMs) {
+        return zoneNameServers(client, domain).thenCompose(zone -> {
+            if (zone.nameServers.isEmpty()) return CompletableFuture.completedFuture(List.of());
+            NameServerChecker checker = new NameServerChecker(client, timeoutMs, 0);
+            List<CompletableFuture<NameServerCheckResult>> checks = new ArrayList<>();
+            for (String ns : zone.nameServers) checks.add(checker.check(zone.name, ns));
+            return CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new))
+                    .thenApply(v -> responsive(checks.stream().map(CompletableFuture::join).toList()));
+        });
+    }
+
+    /**
+     * @param zone a scan of the zone apex
+     * @return the addresses of the name servers that answered during the scan
+     */
+    static @NotNull List<InetSocketAddress> fromScan(@NotNull DnsScanResult zone) {
+        return responsive(zone.nameServerChecks());
+    }
+
+    /**
+     * Queries the name, directly or through the recursive resolvers.
+     */
+    <T> @NotNull CompletableFuture<T> query(@NotNull String name, int type,
+                                            @NotNull AsyncDnsClient.ResponseHandler<T> handler) {
+        long now = System.nanoTime();
+        Server server = servers[0];
+        long slot = Long.MAX_VALUE;
+        // reserve the earliest slot; retry if another query took it meanwhile
+        while (true) {
+            for (Server s : servers) {
+                long next = s.nextSlotNanos.get();
+                if (next < slot) {
+                    slot = next;
+                    server = s;
+                }
+            }
+            long start = Math.max(now, slot);
+            if (server.nextSlotNanos.compareAndSet(slot, start + intervalNanos)) {
+                slot = start;
+                break;
+            }
+            slot = Long.MAX_VALUE;
+        }
+
+        Server target = server;
+        long delay = slot - now;
+        CompletableFuture<T> answer = delay <= 0
+                ? send(target, name, type, handler)
+                : CompletableFuture.supplyAsync(() -> null, delayed(delay))
+                        .thenCompose(v -> send(target, name, type, handler));
+        return answer.exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            // anything else comes from the caller's handler and would fail the same way again
+            if (!(cause instanceof NotAuthoritative || cause instanceof TimeoutException || cause instanceof IOException)) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            // a server that stopped answering gets no new queries for one timeout
+            if (!(cause instanceof NotAuthoritative)) {
+                target.nextSlotNanos.accumulateAndGet(System.nanoTime() + timeoutMs * 1_000_000L, Math::max);
+            }
+            recursive.increment();
+            return client.query(name, type, handler);
+        });
+    }
+
+    /**
+     * @return the number of queries answered by the authoritative servers
+     */
+    long directCount() {
+        return direct.sum();
+    }
+
+    /**
+     * @return the number of queries that fell back to the recursive resolvers
+     */
+    long recursiveCount() {
+        return recursive.sum();
+    }
+
+    private <T> CompletableFuture<T> send(Server server, String name, int type, AsyncDnsClient.ResponseHandler<T> handler) {
+        return client.query(name, type, server.address, timeoutMs, msg -> {
+            if (!isAuthoritativeAnswer(msg)) throw NotAuthoritative.INSTANCE;
+            direct.increment();
+            return handler.handle(msg);
+        });
+    }
+
+    /**
+     * @return {@code false} for referrals and errors that another server may answer
+     */
+    private static boolean isAuthoritativeAnswer(@NotNull ByteBuffer msg) {
+        int rcode = DnsCodec.rcode(msg);
+        if (rcode == DnsMessage.RCODE_NXDOMAIN) return true;
+        if (rcode != DnsMessage.RCODE_NOERROR) return false;
+        // a referral answers nothing and is not authoritative
+        return DnsCodec.answerCount(msg) > 0 || DnsMessage.wrap(msg).isAuthoritative();
+    }
+
+    private static Executor delayed(long delayNanos) {
+        return CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static @NotNull List<InetSocketAddress> responsive(@NotNull List<NameServerCheckResult> checks) {
+        Set<InetSocketAddress> out = new LinkedHashSet<>();
+        for (NameServerCheckResult check : checks) {
+            if (!check.responsive()) continue;
+            for (InetAddress a : check.resolvedAddresses()) out.add(new InetSocketAddress(a, PORT));
+        }
+        return List.copyOf(out);
+    }
+
+    private static CompletableFuture<Zone> zoneNameServers(AsyncDnsClient client, String name) {
+        return client.query(name.isEmpty() ? "." : name, DnsCodec.TYPE_NS, msg -> {
+            List<String> ns = new ArrayList<>();
+            DnsMessage.Records answers = DnsMessage.wrap(msg).answers();
+            while (answers.next(DnsCodec.TYPE_NS)) {
+                if (answers.nameIs(name)) ns.add(answers.targetName());
+            }
+            return ns;
+        }).exceptionally(e -> List.of()).thenCompose(ns -> {
+            if (!ns.isEmpty()) return CompletableFuture.completedFuture(new Zone(name, ns));
+            int dot = name.indexOf('.');
+            // stop below the TLD; its servers are not ours to brute-force
+            if (dot < 0 || name.indexOf('.', dot + 1) < 0) return CompletableFuture.completedFuture(new Zone(name, List.of()));
+            return zoneNameServers(client, name.substring(dot + 1));
+        });
+    }
+
+    private record Zone(String name, List<String> nameServers) {}
+
+    /**
+     * One server and the start of its next free slot.
+     */
+    private static final class Server {
+        final InetSocketAddress address;
+        final AtomicLong nextSlotNanos = new AtomicLong(Long.MIN_VALUE);
+
+        Server(InetSocketAddress address) {
+            this.address = address;
+        }
+    }
+
+    /**
+     * Thrown by the handler of a direct query to fall back to recursion.
+     */
+    private static final class NotAuthoritative extends Exception {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        static final NotAuthoritative INSTANCE = new NotAuthoritative();
+
+        private NotAuthoritative() {
+            super("Not authoritative", null, false, false);
+        }
+    }
+}
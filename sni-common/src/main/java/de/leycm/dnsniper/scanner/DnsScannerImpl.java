@@ -10,142 +10,174 @@
  */
 package de.leycm.dnsniper.scanner;
 
+import de.leycm.dnsniper.dns.CompactDnsRecord;
 import de.leycm.dnsniper.dns.DnsRecord;
 import de.leycm.dnsniper.dns.DnsScanResult;
 import de.leycm.dnsniper.dns.DnsScannerApi;
 import de.leycm.dnsniper.dns.NameServerCheckResult;
+import de.leycm.dnsniper.event.ScanEvent;
+import de.leycm.dnsniper.event.ScanEventLevel;
+import de.leycm.dnsniper.event.ScanEventSink;
+import de.leycm.dnsniper.util.AsyncDnsClient;
+import de.leycm.dnsniper.util.DnsCache;
+import de.leycm.dnsniper.util.DnsCodec;
 import de.leycm.dnsniper.util.SimpleDnsClient;
-import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
 /**
  * Implementation of DnsScannerApi without external libraries.
- * Uses:
- * - InetAddress.getAllByName for A/AAAA resolution
- * - a small internal UDP DNS client (SimpleDnsClient) for other record types
+ * Uses a small internal UDP DNS client ({@link AsyncDnsClient}) for all record types.
+ * A scan sends the queries for every record type at once and waits for them under a single
+ * deadline, so a name costs one round trip instead of one per type. Lookups are asynchronous
+ * and need no thread while in flight; a permit count bounds how many are outstanding across
+ * all scans. Results are kept in a {@link DnsCache} shared by all scans, so NS hosts and
+ * parent zones common to many names are asked once per TTL, and names or types known not to
+ * exist are not asked again until their negative TTL runs out. Name servers are checked
+ * concurrently, and each check is reused by all names of its zone for a configurable window.
  */
 public class DnsScannerImpl implements DnsScannerApi {
 
+    /**
+     * Default number of record lookups in flight across all scans.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_LOOKUPS = 1024;
+
+    /**
+     * Default time name server checks are reused for other names of the same zone.
+     */
+    public static final long DEFAULT_NS_CHECK_WINDOW_MS = 300_000;
+
+    private static final int[] RECORD_TYPES = {
+            DnsCodec.TYPE_A,
+            DnsCodec.TYPE_AAAA,
+            DnsCodec.TYPE_CNAME,
+            DnsCodec.TYPE_MX,
+            DnsCodec.TYPE_NS,
+            DnsCodec.TYPE_TXT,
+            DnsCodec.TYPE_SOA
+    };
+
     private final SimpleDnsClient dnsClient;
-    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final NameServerChecker nsChecker;
+    private volatile int scanTimeoutMs = 5000;
+    private volatile ScanEventSink events = ScanEventSink.noop();
 
     public DnsScannerImpl() {
-        this.dnsClient = new SimpleDnsClient();
-        this.executor = Executors.newFixedThreadPool(6);
+        this(DEFAULT_MAX_CONCURRENT_LOOKUPS, new DnsCache());
+    }
+
+    /**
+     * @param maxConcurrentLookups the maximum number of record lookups in flight across all scans
+     * @param cache                the {@link DnsCache} shared by all scans, or {@code null} to disable caching
+     */
+    public DnsScannerImpl(int maxConcurrentLookups, @Nullable DnsCache cache) {
+        this(maxConcurrentLookups, cache, AsyncDnsClient.systemResolvers());
+    }
+
+    /**
+     * @param maxConcurrentLookups the maximum number of record lookups in flight across all scans
+     * @param cache                the {@link DnsCache} shared by all scans, or {@code null} to disable caching
+     * @param resolvers            the resolvers to ask instead of the system ones
+     */
+    public DnsScannerImpl(int maxConcurrentLookups, @Nullable DnsCache cache, @NotNull List<InetSocketAddress> resolvers) {
+        if (maxConcurrentLookups <= 0) throw new IllegalArgumentException("maxConcurrentLookups > 0 required");
+        this.dnsClient = new SimpleDnsClient(new AsyncDnsClient(resolvers, 3000));
+        this.dnsClient.async().setCache(cache);
+        this.permits = new Semaphore(maxConcurrentLookups);
+        this.nsChecker = new NameServerChecker(dnsClient.async(), 2000, DEFAULT_NS_CHECK_WINDOW_MS);
     }
 
     @Override
     public DnsScanResult scan(String name) {
         Instant now = Instant.now();
         String normalized = normalizeName(name);
+        long deadline = System.nanoTime() + scanTimeoutMs * 1_000_000L;
 
-        List<DnsRecord> records = Collections.synchronizedList(new ArrayList<>());
-
-        try {
-            InetAddress[] addrs = InetAddress.getAllByName(normalized);
-            for (InetAddress a : addrs) {
-                String type = a.getAddress().length == 4 ? "A" : "AAAA";
-                records.add(new DnsRecord(normalized, type, -1, a.getHostAddress()));
-            }
-        } catch (Exception ignored) {
-        }
-
-        List<Integer> types = Arrays.asList(
-                SimpleDnsClient.TYPE_A,
-                SimpleDnsClient.TYPE_AAAA,
-                SimpleDnsClient.TYPE_CNAME,
-                SimpleDnsClient.TYPE_MX,
-                SimpleDnsClient.TYPE_NS,
-                SimpleDnsClient.TYPE_TXT,
-                SimpleDnsClient.TYPE_SOA
-        );
-
-        List<Future<List<DnsRecord>>> futures = new ArrayList<>();
-        for (Integer t : types) {
-            futures.add(executor.submit(() -> dnsClient.lookup(normalized, t)));
+        // all types in flight at once; a cached NXDOMAIN answers every one of them from the cache
+        List<CompletableFuture<List<DnsRecord>>> futures = new ArrayList<>(RECORD_TYPES.length);
+        for (int type : RECORD_TYPES) {
+            futures.add(lookup(normalized, type, deadline));
         }
+        await(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)), deadline);
 
-        for (Future<List<DnsRecord>> f : futures) {
-            try {
-                List<DnsRecord> part = f.get(5, TimeUnit.SECONDS);
-                if (part != null) records.addAll(part);
-            } catch (Exception ignored) {
-            }
+        // answers of different types repeat records (e.g. NS and SOA in every authority section);
+        // compact records dedupe on their binary form without formatting anything
+        Set<CompactDnsRecord> unique = new LinkedHashSet<>();
+        for (CompletableFuture<List<DnsRecord>> f : futures) {
+            if (f.isDone() && !f.isCompletedExceptionally()) unique.addAll(CompactDnsRecord.compact(f.join()));
         }
+        List<DnsRecord> deduped = CompactDnsRecord.asDnsRecords(new ArrayList<>(unique));
 
-        List<DnsRecord> deduped = records.stream()
-                .collect(Collectors.collectingAndThen(
-                        Collectors.toMap(r -> r.type() + "@" + r.data(), r -> r, (a,b)->a),
-                        m -> new ArrayList<>(m.values())
-                ));
-
-        List<String> nsNames = deduped.stream()
-                .filter(r -> "NS".equalsIgnoreCase(r.type()))
-                .map(DnsRecord::data)
-                .map(this::stripDot)
-                .distinct()
-                .collect(Collectors.toList());
-
-        if (nsNames.isEmpty()) {
-            List<DnsRecord> nsOnly = dnsClient.lookup(normalized, SimpleDnsClient.TYPE_NS);
-            nsNames = nsOnly.stream().map(DnsRecord::data).map(this::stripDot).distinct().toList();
+        // NS records are owned by the zone apex, also when they come from the authority section
+        // of a subdomain's answer, so siblings share the memoized checks of their zone
+        Map<String, String> nsZones = new LinkedHashMap<>();
+        for (CompactDnsRecord r : unique) {
+            if (r.type() == DnsCodec.TYPE_NS) nsZones.putIfAbsent(stripDot(r.data()), stripDot(r.name()));
         }
 
-        List<NameServerCheckResult> nsChecks = new ArrayList<>();
-        for (String ns : nsNames) {
-            NameServerCheckResult check = checkNameServer(ns, normalized);
-            nsChecks.add(check);
+        List<CompletableFuture<NameServerCheckResult>> checks = new ArrayList<>(nsZones.size());
+        nsZones.forEach((ns, zone) -> checks.add(nsChecker.check(zone, ns)));
+        // the checks share the scan's deadline; whatever is left of it after the lookups
+        await(CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)), deadline);
+
+        List<NameServerCheckResult> nsChecks = new ArrayList<>(checks.size());
+        Iterator<String> nsNames = nsZones.keySet().iterator();
+        for (CompletableFuture<NameServerCheckResult> check : checks) {
+            String ns = nsNames.next();
+            nsChecks.add(check.isDone() && !check.isCompletedExceptionally()
+                    ? check.join()
+                    : new NameServerCheckResult(ns, List.of(), false, Optional.of("Check did not complete in time")));
         }
 
         DnsScanResult result = new DnsScanResult(normalized, now, deduped, nsChecks);
-        System.out.println(result.shortSummary());
+        ScanEventSink sink = events;
+        if (sink.isEnabled(ScanEventLevel.INFO)) {
+            sink.publish(new ScanEvent.Message(System.currentTimeMillis(), ScanEventLevel.INFO, "dns", result.shortSummary()));
+        }
         return result;
     }
 
-    @Contract("_, _ -> new")
-    private @NotNull NameServerCheckResult checkNameServer(String nsName, String targetToQuery) {
-        String normalized = stripDot(nsName);
-        List<InetAddress> resolved = new ArrayList<>();
-        boolean responsive = false;
-        Optional<String> error = Optional.empty();
-
+    /**
+     * Sends one lookup once a permit is free; the permit returns when the lookup completes.
+     * If no permit frees up before the deadline, the type has no answer.
+     */
+    private @NotNull CompletableFuture<List<DnsRecord>> lookup(String name, int type, long deadlineNanos) {
         try {
-            InetAddress[] ips = InetAddress.getAllByName(normalized);
-            resolved.addAll(Arrays.asList(ips));
-        } catch (Exception e) {
-        }
-
-        for (InetAddress ip : resolved) {
-            try {
-                boolean ok = dnsClient.testResolver(ip.getHostAddress(), targetToQuery, 2000);
-                if (ok) {
-                    responsive = true;
-                    break;
-                }
-            } catch (Exception ex) {
+            if (!permits.tryAcquire(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return CompletableFuture.completedFuture(List.of());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
         }
-
-        if (resolved.isEmpty()) {
-            try {
-                InetAddress[] sys = InetAddress.getAllByName(normalized);
-                resolved.addAll(Arrays.asList(sys));
-                for (InetAddress ip : sys) {
-                    if (dnsClient.testResolver(ip.getHostAddress(), targetToQuery, 2000)) {
-                        responsive = true;
-                        break;
-                    }
-                }
-            } catch (Exception ignored) {}
+        CompletableFuture<List<DnsRecord>> f;
+        try {
+            f = dnsClient.async().lookup(name, type);
+        } catch (RuntimeException e) {
+            permits.release();
+            return CompletableFuture.failedFuture(e);
         }
+        f.whenComplete((r, e) -> permits.release());
+        return f;
+    }
 
-        return new NameServerCheckResult(normalized, resolved, responsive, error);
+    /**
+     * Waits for the future until the deadline; whatever has not completed by then is dropped.
+     */
+    private static void await(@NotNull CompletableFuture<?> future, long deadlineNanos) {
+        try {
+            future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+        }
     }
 
     private @NotNull String normalizeName(@NotNull String n) {
@@ -158,8 +190,45 @@ public class DnsScannerImpl implements DnsScannerApi {
         return s.endsWith(".") ? s.substring(0, s.length()-1) : s;
     }
 
+    /**
+     * Installs the sink receiving one {@link ScanEventLevel#INFO} summary per scan.
+     *
+     * @param sink the sink, or {@link ScanEventSink#noop()} to disable events
+     */
+    public void setEventSink(@NotNull ScanEventSink sink) {
+        this.events = sink;
+    }
+
+    /**
+     * @return the cache shared by all scans, e.g. to read its {@link DnsCache#stats()},
+     *         or {@code null} if caching is disabled
+     */
+    public @Nullable DnsCache cache() {
+        return dnsClient.async().cache();
+    }
+
+    /**
+     * Sets the deadline of a whole scan; record types without an answer by then are left out.
+     *
+     * @param timeoutMs the deadline in milliseconds (default 5000)
+     */
+    public void setScanTimeout(int timeoutMs) {
+        if (timeoutMs <= 0) throw new IllegalArgumentException("timeoutMs > 0 required");
+        this.scanTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Sets how long the outcome of checking a name server is reused for other names of the
+     * same zone. Within the window, a name server is resolved and probed once per zone and
+     * address no matter how many names are scanned. Failed lookups and probes are not reused.
+     *
+     * @param windowMs the window in milliseconds (default 5 minutes), or {@code 0} to check on every scan
+     */
+    public void setNameServerCheckWindow(long windowMs) {
+        nsChecker.setWindow(windowMs);
+    }
+
     public void shutdown() {
-        executor.shutdownNow();
         dnsClient.close();
     }
 }
\ No newline at end of file
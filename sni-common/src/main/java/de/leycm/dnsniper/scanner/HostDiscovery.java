@@ -0,0 +1,89 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.port.PortSet;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Host discovery configuration of a {@link PortScannerImpl}.
+ * <p>
+ * Before a sweep, every host is probed on a few common ports and classified as a
+ * {@link HostState}. {@link HostState#DOWN} hosts are not swept, and neither are
+ * {@link HostState#FILTERED} hosts if {@code skipFiltered} is set; all ports of a skipped host
+ * are reported as {@link de.leycm.dnsniper.port.PortScannerApi.PortStatus#TIMEOUT TIMEOUT},
+ * so a dark address costs one round of {@code probes} instead of a timeout per swept port.
+ * Discovery is only run when the sweep covers more ports than the probe set itself.
+ * </p>
+ * <p>
+ * Like any TCP ping, this misses hosts that silently drop all probe ports but serve
+ * others, which is why discovery is opt-in and filtered hosts are swept by default.
+ * </p>
+ *
+ * @param probes       the ports probed to classify a host
+ * @param timeoutMs    the connect timeout of each probe
+ * @param skipFiltered whether {@link HostState#FILTERED} hosts are skipped as well
+ */
+public record HostDiscovery(@NotNull PortSet probes, int timeoutMs, boolean skipFiltered) {
+
+    /**
+     * System property used by {@link PortScannerImpl} to configure discovery:
+     * {@code on} enables it, {@code strict} enables it skipping filtered hosts too, and a
+     * port specification enables it with other probe ports
+     * (e.g. {@code -Ddnsniper.port.discovery=22,80,443}).
+     */
+    public static final String PROPERTY = "dnsniper.port.discovery";
+
+    /**
+     * Ports probed by default: remote access, mail, web, file sharing and databases.
+     */
+    public static final PortSet DEFAULT_PROBES =
+            PortSet.parse("21-23,25,53,80,110,135,139,143,443,445,993,995,3306,3389,5900,8080,8443");
+
+    public HostDiscovery {
+        if (probes.isEmpty()) throw new IllegalArgumentException("probes must not be empty");
+        if (timeoutMs <= 0) throw new IllegalArgumentException("timeoutMs > 0 required");
+    }
+
+    /**
+     * @return discovery on {@link #DEFAULT_PROBES} with a 1000 ms timeout, sweeping filtered hosts
+     */
+    @Contract(" -> new")
+    public static @NotNull HostDiscovery defaults() {
+        return new HostDiscovery(DEFAULT_PROBES, 1000, false);
+    }
+
+    /**
+     * Resolves the configuration from the {@value #PROPERTY} system property.
+     *
+     * @return the configured discovery, or {@code null} if unset or disabled
+     * @throws IllegalArgumentException if the property is neither a switch nor a valid port specification
+     */
+    public static @Nullable HostDiscovery fromProperty() {
+        String value = System.getProperty(PROPERTY, "").trim();
+        return switch (value.toLowerCase()) {
+            case "on", "true" -> defaults();
+            case "strict" -> new HostDiscovery(DEFAULT_PROBES, 1000, true);
+            case "", "off", "false", "none" -> null;
+            default -> new HostDiscovery(PortSet.parse(value), 1000, false);
+        };
+    }
+
+    /**
+     * @param state the classified state of a host
+     * @return {@code true} if the host should not be swept
+     */
+    public boolean skips(@NotNull HostState state) {
+        return state == HostState.DOWN || (skipFiltered && state == HostState.FILTERED);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.port.PortResult;
+import de.leycm.dnsniper.port.PortSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.util.function.Consumer;
+
+/**
+ * Per-host state of a running port scan: the ports still to probe, the connects in flight,
+ * the host's {@link RttEstimator} and the sink receiving its results.
+ * <p>
+ * The cursor and in-flight count are guarded by the owning {@link ProbeScheduler}, which also
+ * records whether the host answered or was reported unreachable before handing a result to
+ * the sink. {@link #cancel()} may be called from any thread, typically from the sink.
+ * </p>
+ */
+final class HostScan {
+
+    final InetAddress address;
+    final PortSet ports;
+    final RttEstimator timeouts;
+    final Consumer<PortResult> sink;
+
+    int nextPort;
+    int inFlight;
+    volatile boolean cancelled;
+    volatile boolean answered;    // some port accepted or reset a connect
+    volatile boolean unreachable; // some connect failed as host or network unreachable
+
+    HostScan(@NotNull InetAddress address, @NotNull PortSet ports,
+             @NotNull RttEstimator timeouts, @NotNull Consumer<PortResult> sink) {
+        this.address = address;
+        this.ports = ports;
+        this.timeouts = timeouts;
+        this.sink = sink;
+        this.nextPort = ports.nextPort(PortSet.MIN_PORT);
+    }
+
+    /**
+     * Stops handing out further ports of this host. Probes already in flight still complete.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+}
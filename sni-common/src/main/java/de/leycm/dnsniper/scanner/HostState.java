@@ -0,0 +1,20 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+/**
+ * Liveness of a host as classified by the {@link HostDiscovery} phase of a port scan.
+ */
+public enum HostState {
+    UP,       // At least one discovery port accepted the connect or answered with a reset
+    DOWN,     // No port answered, and the host or its network was reported unreachable
+    FILTERED  // Every discovery port stayed silent until its timeout
+}
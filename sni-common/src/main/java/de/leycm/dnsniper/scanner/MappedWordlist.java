@@ -0,0 +1,216 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.util.DnsCodec;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A wordlist read straight from a memory-mapped file.
+ * <p>
+ * Candidates are sanitized on the mapped bytes and only accepted ones become strings, one
+ * at a time as the iterator is advanced, so the heap stays flat however large the list is.
+ * Files beyond the 2 GiB limit of a single mapping are mapped in regions split at line
+ * boundaries. Remote lists are spooled into a temporary file first, which {@link #close()}
+ * deletes.
+ * </p>
+ * <p>
+ * A line is a candidate after trimming whitespace and leading and trailing dots if it is not
+ * empty, does not start with {@code #}, consists of ASCII letters, digits, hyphens and dots
+ * only and fits in a DNS name. Lines end at {@code \n}, {@code \r} or both. Iterators are
+ * independent and may be used concurrently.
+ * </p>
+ */
+final class MappedWordlist implements Iterable<String>, AutoCloseable {
+
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final Path spool;
+    private volatile long size = -1;
+
+    private MappedWordlist(FileChannel channel, MappedByteBuffer[] regions, Path spool) {
+        this.channel = channel;
+        this.regions = regions;
+        this.spool = spool;
+    }
+
+    /**
+     * Maps a local wordlist file.
+     *
+     * @param file the file, one candidate per line
+     * @return the wordlist
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    static @NotNull MappedWordlist open(@NotNull Path file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Copies a stream into a temporary file and maps it.
+     *
+     * @param in the stream, one candidate per line; read to the end but not closed
+     * @return the wordlist, deleting the temporary file when closed
+     * @throws IOException if the stream fails or the file cannot be written
+     */
+    static @NotNull MappedWordlist spool(@NotNull InputStream in) throws IOException {
+        Path file = Files.createTempFile("dnsniper-wordlist-", ".txt");
+        file.toFile().deleteOnExit();
+        try {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            return open(file, file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private static MappedWordlist open(Path file, Path spool) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            List<MappedByteBuffer> regions = new ArrayList<>();
+            long start = 0;
+            while (start < length) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(length - start, REGION_SIZE));
+                if (start + region.limit() < length) {
+                    // end the region after its last line break so no line is split
+                    int i = region.limit() - 1;
+                    while (i >= 0 && !isLineBreak(region.get(i))) i--;
+                    if (i >= 0) region = region.slice(0, i + 1);
+                }
+                regions.add(region);
+                start += region.limit();
+            }
+            return new MappedWordlist(channel, regions.toArray(MappedByteBuffer[]::new), spool);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public @NotNull Iterator<String> iterator() {
+        return new Candidates();
+    }
+
+    /**
+     * Counts the candidates with one pass over the file; the result is kept.
+     *
+     * @return the number of candidates
+     */
+    long size() {
+        long n = size;
+        if (n < 0) {
+            n = 0;
+            for (Candidates it = new Candidates(); it.advance(); ) n++;
+            size = n;
+        }
+        return n;
+    }
+
+    /**
+     * Closes the file and deletes it if it was spooled. The mappings stay valid for running
+     * iterators and are released by the garbage collector.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (spool != null) Files.deleteIfExists(spool);
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean isCandidateByte(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '-' || b == '.';
+    }
+
+    /**
+     * Walks the regions line by line with absolute reads, so the shared buffers are never
+     * modified.
+     */
+    private final class Candidates implements Iterator<String> {
+        private final byte[] scratch = new byte[DnsCodec.MAX_NAME_LENGTH];
+        private int region;
+        private int pos;
+        private int length = -1;
+
+        @Override
+        public boolean hasNext() {
+            return length >= 0 || advance();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String candidate = new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+            length = -1;
+            return candidate;
+        }
+
+        /**
+         * Moves to the next candidate and copies it into the scratch buffer.
+         *
+         * @return {@code false} at the end of the file
+         */
+        boolean advance() {
+            while (region < regions.length) {
+                MappedByteBuffer buf = regions[region];
+                int limit = buf.limit();
+                while (pos < limit) {
+                    int start = pos;
+                    int end = start;
+                    while (end < limit && !isLineBreak(buf.get(end))) end++;
+                    pos = end + 1;
+                    if (accept(buf, start, end)) return true;
+                }
+                region++;
+                pos = 0;
+            }
+            return false;
+        }
+
+        private boolean accept(MappedByteBuffer buf, int start, int end) {
+            while (start < end && (buf.get(start) & 0xFF) <= ' ') start++;
+            while (end > start && (buf.get(end - 1) & 0xFF) <= ' ') end--;
+            if (start == end || buf.get(start) == '#') return false;
+            while (start < end && buf.get(start) == '.') start++;
+            while (end > start && buf.get(end - 1) == '.') end--;
+            int n = end - start;
+            if (n == 0 || n > scratch.length) return false;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(start + i);
+                if (!isCandidateByte(b)) return false;
+                scratch[i] = b;
+            }
+            length = n;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.dns.DnsRecord;
+import de.leycm.dnsniper.dns.NameServerCheckResult;
+import de.leycm.dnsniper.util.AsyncDnsClient;
+import de.leycm.dnsniper.util.DnsCodec;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Checks whether the name servers of a zone answer for it, sharing work between scans.
+ * <p>
+ * Both steps of a check are memoized for a configurable window: resolving an NS host name to
+ * its addresses, and probing one address with an SOA query for the zone. Sibling names of one
+ * zone share its NS set, so scanning thousands of them costs one round of checks per window.
+ * Memo entries hold the in-flight future, so concurrent scans wait for the same queries
+ * instead of sending their own. Only successes are kept once the future completes; a lost
+ * probe or failed lookup is retried by the next scan. All queries are asynchronous and run
+ * concurrently.
+ * </p>
+ */
+final class NameServerChecker {
+
+    private static final int PORT = 53;
+    private static final int PRUNE_THRESHOLD = 4096;
+
+    private final AsyncDnsClient client;
+    private final int probeTimeoutMs;
+    private final ConcurrentHashMap<String, Memo<List<InetAddress>>> addresses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Memo<Boolean>> probes = new ConcurrentHashMap<>();
+    private volatile long windowNanos;
+
+    /**
+     * @param client         the client sending all queries
+     * @param probeTimeoutMs the time a name server has to answer a probe
+     * @param windowMs       how long results are reused
+     */
+    NameServerChecker(@NotNull AsyncDnsClient client, int probeTimeoutMs, long windowMs) {
+        this.client = client;
+        this.probeTimeoutMs = probeTimeoutMs;
+        setWindow(windowMs);
+    }
+
+    void setWindow(long windowMs) {
+        if (windowMs < 0) throw new IllegalArgumentException("windowMs >= 0 required");
+        this.windowNanos = windowMs * 1_000_000L;
+    }
+
+    /**
+     * Checks one name server of a zone: resolves it and probes all its addresses at once.
+     *
+     * @param zone   the zone the name server is authoritative for
+     * @param nsName the host name of the name server
+     * @return the result; {@code responsive} if any address answered
+     */
+    @NotNull CompletableFuture<NameServerCheckResult> check(@NotNull String zone, @NotNull String nsName) {
+        String queryZone = zone.isEmpty() ? "." : zone;
+        return resolve(nsName).thenCompose(addrs -> {
+            if (addrs.isEmpty()) {
+                return CompletableFuture.completedFuture(
+                        new NameServerCheckResult(nsName, addrs, false, Optional.of("Name server does not resolve")));
+            }
+            List<CompletableFuture<Boolean>> answers = new ArrayList<>(addrs.size());
+            for (InetAddress a : addrs) answers.add(probe(queryZone, a));
+            return CompletableFuture.allOf(answers.toArray(CompletableFuture[]::new)).thenApply(v -> {
+                boolean responsive = answers.stream().anyMatch(CompletableFuture::join);
+                return new NameServerCheckResult(nsName, addrs, responsive, Optional.empty());
+            });
+        });
+    }
+
+    /**
+     * @return the A and AAAA addresses of the host, or an empty list if it does not resolve
+     */
+    private CompletableFuture<List<InetAddress>> resolve(String host) {
+        return memo(addresses, host.toLowerCase(Locale.ROOT), addrs -> !addrs.isEmpty(), () -> {
+            CompletableFuture<List<DnsRecord>> v4 = client.lookup(host, DnsCodec.TYPE_A);
+            CompletableFuture<List<DnsRecord>> v6 = client.lookup(host, DnsCodec.TYPE_AAAA);
+            return v4.exceptionally(e -> List.of())
+                    .thenCombine(v6.exceptionally(e -> List.of()), (a, b) -> addressesOf(host, a, b));
+        });
+    }
+
+    private CompletableFuture<Boolean> probe(String zone, InetAddress address) {
+        String key = zone.toLowerCase(Locale.ROOT) + '@' + address.getHostAddress();
+        return memo(probes, key, Boolean::booleanValue, () -> client.query(zone, DnsCodec.TYPE_SOA, new InetSocketAddress(address, PORT),
+                probeTimeoutMs, msg -> Boolean.TRUE).exceptionally(e -> Boolean.FALSE));
+    }
+
+    /**
+     * Returns the memoized future for the key, or computes a new one. The entry is dropped
+     * again when its future completes with a result that is not a success.
+     */
+    private <T> CompletableFuture<T> memo(ConcurrentHashMap<String, Memo<T>> map, String key,
+                                          Predicate<T> success, Supplier<CompletableFuture<T>> compute) {
+        long now = System.nanoTime();
+        long window = windowNanos;
+        if (map.size() > PRUNE_THRESHOLD) map.values().removeIf(m -> m.isExpired(now));
+        List<Memo<T>> created = new ArrayList<>(1);
+        Memo<T> memo = map.compute(key, (k, old) -> {
+            if (old != null && !old.isExpired(now)) return old;
+            Memo<T> fresh = new Memo<>(compute.get(), now + window);
+            created.add(fresh);
+            return fresh;
+        });
+        if (!created.isEmpty()) {
+            memo.value.whenComplete((v, e) -> {
+                if (e != null || !success.test(v)) map.remove(key, memo);
+            });
+        }
+        return memo.value;
+    }
+
+    @SafeVarargs
+    private static @NotNull List<InetAddress> addressesOf(String host, List<DnsRecord> @NotNull ... parts) {
+        // answers may carry glue and chained records of other owners; prefer the host's own
+        List<InetAddress> own = new ArrayList<>();
+        List<InetAddress> any = new ArrayList<>();
+        for (List<DnsRecord> part : parts) {
+            for (DnsRecord r : part) {
+                if (!"A".equals(r.type()) && !"AAAA".equals(r.type())) continue;
+                InetAddress a;
+                try {
+                    a = InetAddress.getByName(r.data()); // literal, no lookup
+                } catch (Exception e) {
+                    continue;
+                }
+                if (any.contains(a)) continue;
+                any.add(a);
+                if (sameName(r.name(), host)) own.add(a);
+            }
+        }
+        return own.isEmpty() ? any : own;
+    }
+
+    private static boolean sameName(String a, String b) {
+        int la = a.endsWith(".") ? a.length() - 1 : a.length();
+        int lb = b.endsWith(".") ? b.length() - 1 : b.length();
+        return la == lb && a.regionMatches(true, 0, b, 0, la);
+    }
+
+    private record Memo<T>(CompletableFuture<T> value, long expiresNanos) {
+        boolean isExpired(long now) {
+            return now - expiresNanos >= 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.util.DnsMessage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Lists the names of a DNSSEC-signed domain by walking its NSEC chain (RFC 4034).
+ * <p>
+ * Every existing name of a zone signed with plain NSEC owns an NSEC record naming the next
+ * existing name in canonical order. In that order a name's descendants come right after it,
+ * so starting at the domain and following the chain until it leaves the domain's subtree
+ * or returns to the apex visits every name below the domain, one query per name.
+ * </p>
+ * <p>
+ * The walk gives up on NSEC3 zones and on unsigned zones, where there is no NSEC to follow.
+ * It also gives up on online signers that synthesize minimal NSEC records ("black lies",
+ * next name {@code \000.<name>}), on loops, and when the chain exceeds a size limit or the
+ * walk runs past its deadline, since one query per name can take longer than brute force.
+ * </p>
+ */
+final class NsecWalker {
+
+    static final int TYPE_NSEC = 47;
+    static final int DEFAULT_MAX_NAMES = 100_000;
+
+    private NsecWalker() {
+    }
+
+    /**
+     * Walks the NSEC chain below a domain.
+     *
+     * @param query    sends an NSEC query for a name and completes with the raw response
+     * @param domain   the domain to list
+     * @param maxNames the largest number of names to walk before giving up
+     * @param deadlineNanos the {@link System#nanoTime()} by which the walk must be done
+     * @return the names below the domain in canonical order, or {@code null} if the chain
+     *         cannot be walked within the limits
+     */
+    static @Nullable List<String> walk(@NotNull Function<String, CompletableFuture<String>> query,
+                                       @NotNull String domain, int maxNames, long deadlineNanos) {
+        String root = domain.toLowerCase(Locale.ROOT);
+        Set<String> names = new LinkedHashSet<>();
+        String current = root;
+        while (names.size() < maxNames) {
+            String next;
+            try {
+                next = query.apply(current).get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (next == null) return null;
+            next = next.toLowerCase(Locale.ROOT);
+            // back at the apex or past the subtree: every name below the domain was visited
+            if (next.equals(root) || !isBelow(next, root)) return List.copyOf(names);
+            if (next.indexOf('\0') >= 0 || !names.add(next)) return null;
+            current = next;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next name from the NSEC record of {@code owner} in an answer.
+     *
+     * @return the next name, or {@code null} if the answer holds no NSEC record for the owner
+     */
+    static @Nullable String nextName(@NotNull ByteBuffer msg, @NotNull String owner) {
+        DnsMessage response = DnsMessage.wrap(msg);
+        if (response.rcode() != DnsMessage.RCODE_NOERROR) return null;
+        DnsMessage.Records answers = response.answers();
+        while (answers.next(TYPE_NSEC)) {
+            if (answers.nameIs(owner)) return answers.targetName();
+        }
+        return null;
+    }
+
+    private static boolean isBelow(String name, String root) {
+        return name.length() > root.length() + 1
+                && name.endsWith(root)
+                && name.charAt(name.length() - root.length() - 1) == '.';
+    }
+}
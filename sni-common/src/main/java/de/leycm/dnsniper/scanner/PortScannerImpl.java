@@ -10,19 +10,26 @@
  */
 package de.leycm.dnsniper.scanner;
 
+import de.leycm.dnsniper.event.ScanEvent;
+import de.leycm.dnsniper.event.ScanEventLevel;
+import de.leycm.dnsniper.event.ScanEventSink;
+import de.leycm.dnsniper.port.CidrRange;
+import de.leycm.dnsniper.port.CompactPortScanResult;
 import de.leycm.dnsniper.port.PortResult;
 import de.leycm.dnsniper.port.PortScanResult;
 import de.leycm.dnsniper.port.PortScannerApi;
-import org.jetbrains.annotations.Contract;
+import de.leycm.dnsniper.port.PortSet;
+import de.leycm.dnsniper.util.ExecutionMode;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
@@ -30,57 +37,106 @@ import java.util.function.Predicate;
  * <p>
  * This class provides functionality to scan TCP ports on a given host using multithreading.
  * It supports scanning all ports or filtering specific ports based on a predicate.
+ * Ports are probed by one of two {@link Engine}s: a pool of blocking connects, or
+ * non-blocking connects multiplexed on a selector ({@link SelectorPortScanner}).
+ * The blocking engine runs on platform or virtual threads depending on the {@link ExecutionMode}.
+ * </p>
+ * <p>
+ * Sweeps can be preceded by a {@link HostDiscovery} phase that skips hosts not answering on
+ * any common port; the ports of skipped hosts are reported as timed out.
  * </p>
  */
 public class PortScannerImpl implements PortScannerApi {
 
-    private final int timeoutMs;
+    /**
+     * System property used by {@link #PortScannerImpl()} to pick the {@link Engine}
+     * (e.g. {@code -Ddnsniper.port.engine=selector}).
+     */
+    public static final String ENGINE_PROPERTY = "dnsniper.port.engine";
+
+    private final Engine engine;
+    private final int maxConcurrency;
+    private final Semaphore permits;
     private final ExecutorService executor;
+    private final SelectorPortScanner selectorScanner;
+    private volatile ScanEventSink events = ScanEventSink.noop();
+    private volatile TimeoutPolicy timeoutPolicy;
+    private volatile int maxInFlightPerHost;
+    private volatile HostDiscovery hostDiscovery = HostDiscovery.fromProperty();
 
     /**
      * Constructs a PortScannerImpl with a default timeout of 500ms per port.
+     * The engine and execution mode are taken from the {@value #ENGINE_PROPERTY} and
+     * {@value ExecutionMode#PROPERTY} system properties and default to
+     * {@link Engine#EXECUTOR} on {@link ExecutionMode#PLATFORM} threads.
      */
     public PortScannerImpl() {
-        this(500);
+        this(500, Engine.fromProperty(), ExecutionMode.fromProperty());
     }
 
     /**
-     * Constructs a PortScannerImpl with a custom timeout.
+     * Constructs a PortScannerImpl with a custom timeout using the {@link Engine#EXECUTOR} engine.
      *
      * @param timeoutMs the timeout in milliseconds for each port scan
      */
     public PortScannerImpl(int timeoutMs) {
-        this.timeoutMs = timeoutMs;
-        this.executor = Executors.newFixedThreadPool(200);
+        this(timeoutMs, Engine.EXECUTOR);
+    }
+
+    /**
+     * Constructs a PortScannerImpl with a custom timeout and connect engine
+     * running on {@link ExecutionMode#PLATFORM} threads.
+     *
+     * @param timeoutMs the timeout in milliseconds for each port scan
+     * @param engine    the {@link Engine} used to probe ports
+     */
+    public PortScannerImpl(int timeoutMs, @NotNull Engine engine) {
+        this(timeoutMs, engine, ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * Constructs a PortScannerImpl with the default concurrency for the given mode:
+     * 200 connects in {@link ExecutionMode#PLATFORM} mode (one per pool thread),
+     * 4096 in {@link ExecutionMode#VIRTUAL} mode or with the {@link Engine#SELECTOR} engine.
+     *
+     * @param timeoutMs the timeout in milliseconds for each port scan
+     * @param engine    the {@link Engine} used to probe ports
+     * @param mode      the {@link ExecutionMode} of the {@link Engine#EXECUTOR} engine
+     */
+    public PortScannerImpl(int timeoutMs, @NotNull Engine engine, @NotNull ExecutionMode mode) {
+        this(timeoutMs, engine, mode, mode == ExecutionMode.VIRTUAL || engine == Engine.SELECTOR ? 4096 : 200);
+    }
+
+    /**
+     * Constructs a fully configured PortScannerImpl. When several hosts are scanned at once,
+     * each host is capped at a quarter of {@code maxConcurrency} connects (at least one) unless
+     * {@link #setMaxInFlightPerHost(int)} says otherwise.
+     *
+     * @param timeoutMs      the timeout in milliseconds for each port scan
+     * @param engine         the {@link Engine} used to probe ports
+     * @param mode           the {@link ExecutionMode} of the {@link Engine#EXECUTOR} engine
+     * @param maxConcurrency the maximum number of connects in flight per scanner
+     */
+    public PortScannerImpl(int timeoutMs, @NotNull Engine engine, @NotNull ExecutionMode mode, int maxConcurrency) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency > 0 required");
+        this.timeoutPolicy = TimeoutPolicy.fixed(timeoutMs);
+        this.engine = engine;
+        this.maxConcurrency = maxConcurrency;
+        this.maxInFlightPerHost = Math.max(1, maxConcurrency / 4);
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = engine == Engine.EXECUTOR ? mode.newExecutor("port-scan", maxConcurrency) : null;
+        this.selectorScanner = engine == Engine.SELECTOR ? new SelectorPortScanner(maxConcurrency) : null;
     }
 
     /**
      * Scans all TCP ports (1-65535) on the specified address.
-     * Each port is scanned in parallel using a thread pool.
      *
      * @param address the target {@link InetAddress}
      * @return a {@link PortScanResult} containing the results for all ports
      */
     @Override
     public PortScanResult scanAllPorts(InetAddress address) {
-        Instant start = Instant.now();
-        List<Future<PortResult>> futures = new ArrayList<>();
-
-        for (int port = 1; port <= 65535; port++) {
-            final int p = port;
-            futures.add(executor.submit(() -> scanPort(address, p)));
-        }
-
-        List<PortResult> results = new ArrayList<>(65535);
-        for (Future<PortResult> f : futures) {
-            try {
-                results.add(f.get());
-            } catch (Exception ignored) {}
-        }
-
-        PortScanResult result = new PortScanResult(address, start, results);
-        System.out.println(result.summary());
-        return result;
+        return scanPorts(address, PortSet.all());
     }
 
     /**
@@ -93,69 +149,367 @@ public class PortScannerImpl implements PortScannerApi {
      */
     @Override
     public PortScanResult scanAllPorts(InetAddress address, Predicate<Integer> portFilter) {
+        return scanPorts(address, PortSet.fromPredicate(portFilter));
+    }
+
+    /**
+     * Scans the given set of TCP ports on the specified address.
+     * Only the selected ports are visited and the result buffers are sized to the selection.
+     *
+     * @param address the target {@link InetAddress}
+     * @param ports   the {@link PortSet} to scan
+     * @return a {@link PortScanResult} containing the results for the selected ports
+     */
+    @Override
+    public PortScanResult scanPorts(InetAddress address, @NotNull PortSet ports) {
         Instant start = Instant.now();
-        List<Future<PortResult>> futures = new ArrayList<>();
+        CompactPortScanResult.Builder builder = CompactPortScanResult.builder(address, start, ports);
+        probe(address, ports, builder::record);
 
-        for (int port = 1; port <= 65535; port++) {
-            final int p = port;
-            if (portFilter.test(port))
-                futures.add(executor.submit(() -> scanPort(address, p)));
+        PortScanResult result = builder.build().toPortScanResult();
+        ScanEventSink sink = events;
+        if (sink.isEnabled(ScanEventLevel.INFO)) {
+            sink.publish(new ScanEvent.Message(System.currentTimeMillis(), ScanEventLevel.INFO, "port", result.summary()));
         }
+        return result;
+    }
 
-        List<PortResult> results = new ArrayList<>(65535);
-        for (Future<PortResult> f : futures) {
-            try {
-                results.add(f.get());
-            } catch (Exception ignored) {}
+    /**
+     * Scans TCP ports on the specified address and hands every result to the sink
+     * as soon as its port is classified.
+     * <p>
+     * Only the current in-flight window is held in memory; nothing is aggregated.
+     * The sink is invoked from scanner threads, possibly concurrently, and must be thread-safe.
+     * </p>
+     *
+     * @param address    the target {@link InetAddress}
+     * @param portFilter a {@link Predicate} to filter ports to be scanned
+     * @param sink       receives each {@link PortResult} in completion order
+     */
+    @Override
+    public void streamPorts(InetAddress address, Predicate<Integer> portFilter, Consumer<PortResult> sink) {
+        streamPorts(address, PortSet.fromPredicate(portFilter), sink);
+    }
+
+    /**
+     * Scans the given set of TCP ports and hands every result to the sink as soon as
+     * its port is classified.
+     *
+     * @param address the target {@link InetAddress}
+     * @param ports   the {@link PortSet} to scan
+     * @param sink    receives each {@link PortResult} in completion order
+     */
+    @Override
+    public void streamPorts(InetAddress address, @NotNull PortSet ports, Consumer<PortResult> sink) {
+        probe(address, ports, sink);
+    }
+
+    /**
+     * Scans the given ports on every host, interleaving ports across hosts.
+     * <p>
+     * All hosts share the scanner's concurrency budget and each host is capped at
+     * {@link #setMaxInFlightPerHost(int) maxInFlightPerHost} connects, so an unresponsive
+     * host cannot stall the others. Each host gets its own {@link RttEstimator}.
+     * </p>
+     *
+     * @param hosts the target addresses; duplicates are scanned once
+     * @param ports the {@link PortSet} to scan on every host
+     * @return the result per host, in iteration order of {@code hosts}
+     */
+    @Override
+    public Map<InetAddress, PortScanResult> scanHosts(@NotNull Collection<InetAddress> hosts, @NotNull PortSet ports) {
+        Instant start = Instant.now();
+        Map<InetAddress, CompactPortScanResult.Builder> builders = new LinkedHashMap<>();
+        for (InetAddress host : hosts) {
+            builders.computeIfAbsent(host, h -> CompactPortScanResult.builder(h, start, ports));
         }
 
-        PortScanResult result = new PortScanResult(address, start, results);
-        System.out.println(result.summary());
-        return result;
+        List<HostScan> scans = new ArrayList<>(builders.size());
+        builders.forEach((host, builder) -> scans.add(hostScan(host, ports, builder::record)));
+        run(scans);
+
+        Map<InetAddress, PortScanResult> results = new LinkedHashMap<>();
+        ScanEventSink sink = events;
+        builders.forEach((host, builder) -> {
+            PortScanResult result = builder.build().toPortScanResult();
+            results.put(host, result);
+            if (sink.isEnabled(ScanEventLevel.INFO)) {
+                sink.publish(new ScanEvent.Message(System.currentTimeMillis(), ScanEventLevel.INFO, "port", result.summary()));
+            }
+        });
+        return results;
     }
 
     /**
-     * Scans a single TCP port on the given address.
+     * Scans the given ports on every address of a CIDR block, interleaving ports across hosts.
      *
-     * @param address the target {@link InetAddress}
-     * @param port    the port number to scan
-     * @return a new {@link PortResult} with the scan outcome
+     * @param range the {@link CidrRange} to scan, at most {@link CidrRange#MAX_LIST_SIZE} addresses
+     * @param ports the {@link PortSet} to scan on every host
+     * @return the result per host, in ascending address order
+     * @see #scanHosts(Collection, PortSet)
+     */
+    @Override
+    public Map<InetAddress, PortScanResult> scanRange(@NotNull CidrRange range, @NotNull PortSet ports) {
+        return scanHosts(range.toList(), ports);
+    }
+
+    /**
+     * Sets the maximum number of connects in flight against one host when scanning several
+     * hosts at once. Single-host scans always use the full concurrency budget. Defaults to a
+     * quarter of the budget; values above the budget are capped by it.
+     *
+     * @param maxInFlightPerHost the per-host cap, at least 1
+     */
+    public void setMaxInFlightPerHost(int maxInFlightPerHost) {
+        if (maxInFlightPerHost <= 0) throw new IllegalArgumentException("maxInFlightPerHost > 0 required");
+        this.maxInFlightPerHost = maxInFlightPerHost;
+    }
+
+    /**
+     * Probes the ports with the configured engine and blocks until all are classified.
+     */
+    private void probe(InetAddress address, @NotNull PortSet ports, @NotNull Consumer<PortResult> sink) {
+        run(List.of(hostScan(address, ports, sink)));
+    }
+
+    private @NotNull HostScan hostScan(InetAddress address, @NotNull PortSet ports, @NotNull Consumer<PortResult> sink) {
+        ScanEventSink eventSink = events;
+        // only wrap the sink when someone listens, so the hot path stays untouched otherwise
+        Consumer<PortResult> logged = !eventSink.isEnabled(ScanEventLevel.TRACE) ? sink : r -> {
+            eventSink.publish(new ScanEvent.PortProbed(System.currentTimeMillis(), address, r));
+            sink.accept(r);
+        };
+        return new HostScan(address, ports, timeoutPolicy.newEstimator(), logged);
+    }
+
+    private void run(@NotNull List<HostScan> hosts) {
+        HostDiscovery discovery = hostDiscovery;
+        if (discovery != null) hosts = discover(hosts, discovery);
+        if (hosts.isEmpty()) return;
+        execute(hosts, hosts.size() == 1 ? maxConcurrency : Math.min(maxInFlightPerHost, maxConcurrency));
+    }
+
+    private void execute(@NotNull List<HostScan> hosts, int perHostLimit) {
+        ProbeScheduler scheduler = new ProbeScheduler(hosts, perHostLimit);
+        switch (engine) {
+            case EXECUTOR -> scanWithExecutor(scheduler);
+            case SELECTOR -> selectorScanner.scan(scheduler);
+        }
+    }
+
+    /**
+     * Probes the discovery ports of all hosts whose sweep is larger than the probe set
+     * and drops the hosts the discovery skips, reporting all their ports as timed out.
+     *
+     * @return the hosts to sweep
+     */
+    private @NotNull List<HostScan> discover(@NotNull List<HostScan> hosts, @NotNull HostDiscovery discovery) {
+        List<Liveness> probed = new ArrayList<>();
+        for (HostScan host : hosts) {
+            if (host.ports.size() > discovery.probes().size()) probed.add(new Liveness(host.address, discovery));
+        }
+        if (probed.isEmpty()) return hosts;
+
+        List<HostScan> probes = new ArrayList<>(probed.size());
+        for (Liveness l : probed) probes.add(l.probe);
+        execute(probes, discovery.probes().size());
+
+        Set<InetAddress> skipped = new HashSet<>();
+        ScanEventSink sink = events;
+        for (Liveness l : probed) {
+            HostState state = l.state();
+            if (discovery.skips(state)) {
+                skipped.add(l.probe.address);
+                if (sink.isEnabled(ScanEventLevel.INFO)) {
+                    sink.publish(new ScanEvent.Message(System.currentTimeMillis(), ScanEventLevel.INFO, "port",
+                            "Host " + l.probe.address.getHostAddress() + " is " + state + ", skipped"));
+                }
+            } else if (sink.isEnabled(ScanEventLevel.DEBUG)) {
+                sink.publish(new ScanEvent.Message(System.currentTimeMillis(), ScanEventLevel.DEBUG, "port",
+                        "Host " + l.probe.address.getHostAddress() + " is " + state));
+            }
+        }
+        if (skipped.isEmpty()) return hosts;
+
+        List<HostScan> live = new ArrayList<>(hosts.size() - skipped.size());
+        for (HostScan host : hosts) {
+            if (!skipped.contains(host.address)) {
+                live.add(host);
+                continue;
+            }
+            long pingMs = discovery.timeoutMs();
+            host.ports.forEach(port -> host.sink.accept(new PortResult(port, PortStatus.TIMEOUT, pingMs)));
+        }
+        return live;
+    }
+
+    /**
+     * Classifies hosts without sweeping them, using the configured {@link HostDiscovery}
+     * or {@link HostDiscovery#defaults()} if discovery is disabled.
+     *
+     * @param hosts the addresses to classify
+     * @return the {@link HostState} of each host, in iteration order of {@code hosts}
+     */
+    public @NotNull Map<InetAddress, HostState> discoverHosts(@NotNull Collection<InetAddress> hosts) {
+        HostDiscovery discovery = hostDiscovery != null ? hostDiscovery : HostDiscovery.defaults();
+        Map<InetAddress, Liveness> probed = new LinkedHashMap<>();
+        for (InetAddress host : hosts) probed.computeIfAbsent(host, h -> new Liveness(h, discovery));
+
+        List<HostScan> probes = new ArrayList<>(probed.size());
+        for (Liveness l : probed.values()) probes.add(l.probe);
+        if (!probes.isEmpty()) execute(probes, discovery.probes().size());
+
+        Map<InetAddress, HostState> states = new LinkedHashMap<>();
+        probed.forEach((host, l) -> states.put(host, l.state()));
+        return states;
+    }
+
+    /**
+     * Scans the ports with one blocking connect per port on the executor.
+     * The number of connects in flight is bounded by the scanner's permits,
+     * so at most that many tasks exist at any time.
      */
-    @Contract("_, _ -> new")
-    private @NotNull PortResult scanPort(InetAddress address, int port) {
+    private void scanWithExecutor(@NotNull ProbeScheduler scheduler) {
+        try {
+            while (true) {
+                permits.acquire();
+                long slot = scheduler.awaitNext();
+                if (slot < 0) {
+                    permits.release();
+                    break;
+                }
+                HostScan host = scheduler.host(slot);
+                int port = ProbeScheduler.port(slot);
+                executor.execute(() -> {
+                    try {
+                        scanPort(host, port, scheduler);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            scheduler.awaitDone();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            // scanner was shut down mid-scan; release the permit taken for the rejected port
+            permits.release();
+        }
+    }
+
+    /**
+     * Scans a single TCP port and reports the outcome to the scheduler.
+     *
+     * @param host      the target host
+     * @param port      the port number to scan
+     * @param scheduler the {@link ProbeScheduler} the probe was claimed from
+     */
+    private void scanPort(@NotNull HostScan host, int port, @NotNull ProbeScheduler scheduler) {
+        int timeoutMs = host.timeouts.timeoutMs();
         long startTime = System.nanoTime();
+        PortStatus status;
+        boolean measured = true;
         try (Socket socket = new Socket()) {
-            socket.connect(new java.net.InetSocketAddress(address, port), timeoutMs);
-            long ping = (System.nanoTime() - startTime) / 1_000_000;
-            log(address, port, PortStatus.OPEN, ping);
-            return new PortResult(port, PortStatus.OPEN, ping);
+            socket.connect(new java.net.InetSocketAddress(host.address, port), timeoutMs);
+            status = PortStatus.OPEN;
         } catch (IOException e) {
-            long ping = (System.nanoTime() - startTime) / 1_000_000;
-            PortStatus status = e.getMessage() != null && e.getMessage().contains("timed out")
-                    ? PortStatus.TIMEOUT : PortStatus.CLOSED;
-            log(address, port, status, ping);
-            return new PortResult(port, status, ping);
+            if (e.getMessage() != null && e.getMessage().contains("timed out")) {
+                status = PortStatus.TIMEOUT;
+            } else {
+                status = PortStatus.CLOSED;
+                // no route or unreachable: no round trip to the port, often not even a packet sent
+                measured = ProbeScheduler.refused(e);
+            }
         }
+        long ping = (System.nanoTime() - startTime) / 1_000_000;
+        if (measured) scheduler.complete(host, port, status, ping, timeoutMs);
+        else scheduler.unreachable(host, port, ping);
+    }
+
+    /**
+     * Sets how connect deadlines are chosen. With {@link TimeoutPolicy#adaptive(int, int, int)}
+     * every scanned host gets its own {@link RttEstimator}, so LAN targets are swept with
+     * deadlines close to their real RTT while distant hosts get more time.
+     * Applies to scans started after the call.
+     *
+     * @param policy the {@link TimeoutPolicy}
+     */
+    public void setTimeoutPolicy(@NotNull TimeoutPolicy policy) {
+        this.timeoutPolicy = policy;
+    }
+
+    /**
+     * Sets the discovery phase run before each sweep, or disables it with {@code null}.
+     * Disabled unless the {@value HostDiscovery#PROPERTY} system property enables it.
+     * Applies to scans started after the call.
+     *
+     * @param discovery the {@link HostDiscovery}, or {@code null} to sweep every host
+     */
+    public void setHostDiscovery(@Nullable HostDiscovery discovery) {
+        this.hostDiscovery = discovery;
     }
 
     /**
-     * Logs the result of a port scan to the console.
+     * Installs the sink receiving scan events: one {@link ScanEventLevel#TRACE} event per
+     * probed port and one {@link ScanEventLevel#INFO} summary per scan.
      *
-     * @param address   the target address
-     * @param port   the port number
-     * @param status the scan result status
-     * @param ping   the time taken in milliseconds
+     * @param sink the sink, or {@link ScanEventSink#noop()} to disable events
      */
-    private void log(@NotNull InetAddress address, int port, PortStatus status, long ping) {
-        System.out.printf("[%s] %s:%d -> %s (%dms)%n",
-                Thread.currentThread().getName(),
-                address.getHostAddress(), port, status, ping);
+    public void setEventSink(@NotNull ScanEventSink sink) {
+        this.events = sink;
     }
 
     /**
      * Shuts down the thread pool and cancels all running tasks.
      */
     public void shutdown() {
-        executor.shutdownNow();
+        if (executor != null) executor.shutdownNow();
+    }
+
+    /**
+     * Collects the discovery probes of one host. The first port that accepts or resets the
+     * connect settles the host as {@link HostState#UP} and cancels its remaining probes;
+     * otherwise the host is {@link HostState#DOWN} if a probe was reported unreachable and
+     * {@link HostState#FILTERED} if all of them stayed silent.
+     */
+    private static final class Liveness implements Consumer<PortResult> {
+        final HostScan probe;
+
+        Liveness(@NotNull InetAddress address, @NotNull HostDiscovery discovery) {
+            this.probe = new HostScan(address, discovery.probes(),
+                    TimeoutPolicy.fixed(discovery.timeoutMs()).newEstimator(), this);
+        }
+
+        @Override
+        public void accept(@NotNull PortResult result) {
+            // the scheduler marks the host before handing over the result
+            if (probe.answered) probe.cancel();
+        }
+
+        @NotNull HostState state() {
+            if (probe.answered) return HostState.UP;
+            return probe.unreachable ? HostState.DOWN : HostState.FILTERED;
+        }
+    }
+
+    /**
+     * Connect engine used to probe ports.
+     */
+    public enum Engine {
+        EXECUTOR, // One blocking Socket.connect per port on a fixed thread pool
+        SELECTOR; // Non-blocking SocketChannel connects multiplexed on a Selector
+
+        /**
+         * Resolves the engine from the {@value PortScannerImpl#ENGINE_PROPERTY} system property.
+         *
+         * @return the configured engine, or {@link #EXECUTOR} if unset or unknown
+         */
+        public static @NotNull Engine fromProperty() {
+            String value = System.getProperty(ENGINE_PROPERTY, "");
+            for (Engine e : values()) {
+                if (e.name().equalsIgnoreCase(value.trim())) return e;
+            }
+            return EXECUTOR;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.port.PortResult;
+import de.leycm.dnsniper.port.PortScannerApi.PortStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.List;
+
+/**
+ * Hands out (host, port) probes for one scan across any number of hosts.
+ * <p>
+ * Hosts are served round-robin, so ports are interleaved across hosts instead of finishing
+ * one host before starting the next: a host that drops packets only ties up its own
+ * {@code perHostLimit} connects while the rest of the global window keeps the other hosts moving.
+ * </p>
+ * <p>
+ * {@link #next()} and {@link #awaitNext()} are meant to be called from the single thread
+ * driving the scan; {@link #complete} may be called from any thread.
+ * </p>
+ */
+final class ProbeScheduler {
+
+    private final HostScan[] hosts;
+    private final int perHostLimit;
+    private int cursor;
+    private int hostsWithPorts;
+    private int inFlight;
+
+    ProbeScheduler(@NotNull List<HostScan> hosts, int perHostLimit) {
+        if (perHostLimit <= 0) throw new IllegalArgumentException("perHostLimit > 0 required");
+        this.hosts = hosts.toArray(new HostScan[0]);
+        this.perHostLimit = perHostLimit;
+        for (HostScan h : this.hosts) {
+            if (h.nextPort >= 0) hostsWithPorts++;
+        }
+    }
+
+    /**
+     * Claims the next probe without blocking.
+     *
+     * @return the claimed probe as {@code (hostIndex << 32) | port}, or {@code -1} if every
+     *         host is either done, cancelled or at its in-flight limit
+     */
+    synchronized long next() {
+        if (hostsWithPorts == 0) return -1;
+        for (int i = 0; i < hosts.length; i++) {
+            int index = cursor;
+            HostScan h = hosts[index];
+            if (++cursor == hosts.length) cursor = 0;
+            if (h.nextPort < 0) continue;
+            if (h.cancelled) {
+                h.nextPort = -1;
+                hostsWithPorts--;
+                continue;
+            }
+            if (h.inFlight >= perHostLimit) continue;
+
+            int port = h.nextPort;
+            h.nextPort = h.ports.nextPort(port + 1);
+            if (h.nextPort < 0) hostsWithPorts--;
+            h.inFlight++;
+            inFlight++;
+            return ((long) index << 32) | port;
+        }
+        return -1;
+    }
+
+    /**
+     * Claims the next probe, waiting for a host to drop below its in-flight limit if needed.
+     *
+     * @return the claimed probe as in {@link #next()}, or {@code -1} once all ports are handed out
+     */
+    synchronized long awaitNext() throws InterruptedException {
+        while (true) {
+            long slot = next();
+            if (slot >= 0 || hostsWithPorts == 0) return slot;
+            wait();
+        }
+    }
+
+    /**
+     * @return {@code true} once every port of every host has been handed out
+     */
+    synchronized boolean exhausted() {
+        return hostsWithPorts == 0;
+    }
+
+    /**
+     * Blocks until every claimed probe has completed and no ports are left.
+     */
+    synchronized void awaitDone() throws InterruptedException {
+        while (hostsWithPorts > 0 || inFlight > 0) wait();
+    }
+
+    /**
+     * @param slot a value returned by {@link #next()}
+     * @return the host of the probe
+     */
+    HostScan host(long slot) {
+        return hosts[(int) (slot >>> 32)];
+    }
+
+    /**
+     * @param slot a value returned by {@link #next()}
+     * @return the port of the probe
+     */
+    static int port(long slot) {
+        return (int) slot;
+    }
+
+    /**
+     * Reports the outcome of a claimed probe: feeds the host's {@link RttEstimator},
+     * hands the result to the host's sink and frees the in-flight slot.
+     *
+     * @param host          the probed host
+     * @param port          the probed port
+     * @param status        the classified status
+     * @param pingMs        the elapsed time in milliseconds
+     * @param usedTimeoutMs the deadline the connect was started with
+     */
+    void complete(@NotNull HostScan host, int port, @NotNull PortStatus status, long pingMs, int usedTimeoutMs) {
+        if (status == PortStatus.TIMEOUT) host.timeouts.onTimeout(usedTimeoutMs);
+        else host.timeouts.onReply(pingMs);
+        classify(host, port, status, pingMs);
+    }
+
+    /**
+     * Reports the outcome of a claimed probe that measured no round trip, such as a connect
+     * refused before it could be timed: hands the result to the host's sink and frees the
+     * in-flight slot without feeding the host's {@link RttEstimator}.
+     *
+     * @param host   the probed host
+     * @param port   the probed port
+     * @param status the classified status
+     * @param pingMs the elapsed time in milliseconds
+     */
+    void classify(@NotNull HostScan host, int port, @NotNull PortStatus status, long pingMs) {
+        if (status != PortStatus.TIMEOUT && !host.answered) host.answered = true;
+        report(host, port, status, pingMs);
+    }
+
+    /**
+     * Reports a claimed probe whose connect failed without a reply from the port (no route,
+     * host or network unreachable): marks the host unreachable and hands the port to the
+     * sink as {@link PortStatus#CLOSED}, without feeding the host's {@link RttEstimator}.
+     *
+     * @param host   the probed host
+     * @param port   the probed port
+     * @param pingMs the elapsed time in milliseconds
+     */
+    void unreachable(@NotNull HostScan host, int port, long pingMs) {
+        host.unreachable = true;
+        report(host, port, PortStatus.CLOSED, pingMs);
+    }
+
+    private void report(HostScan host, int port, PortStatus status, long pingMs) {
+        try {
+            host.sink.accept(new PortResult(port, status, pingMs));
+        } finally {
+            synchronized (this) {
+                host.inFlight--;
+                inFlight--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @param e the failure of a connect that did not time out
+     * @return {@code true} if the port answered with a reset, the only failure that
+     *         measures a round trip to the host
+     */
+    static boolean refused(@NotNull IOException e) {
+        return e instanceof ConnectException;
+    }
+}
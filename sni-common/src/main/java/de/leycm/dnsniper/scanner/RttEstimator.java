@@ -0,0 +1,97 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Per-host connect timeout estimator in the style of TCP's retransmission timer (RFC 6298).
+ * <p>
+ * Every OPEN or CLOSED reply is an RTT sample: it updates the smoothed RTT ({@code SRTT})
+ * and its variance ({@code RTTVAR}), and the timeout becomes {@code SRTT + 4 * RTTVAR}
+ * clamped to the policy bounds. Timeouts are not samples (Karn); while a host has not
+ * produced any sample yet, each timeout doubles the deadline instead, so slow links that
+ * answer after the initial deadline are still reached.
+ * </p>
+ * Thread-safe: the executor engine updates it from many threads at once.
+ */
+public final class RttEstimator {
+
+    private static final double ALPHA = 1.0 / 8;
+    private static final double BETA = 1.0 / 4;
+    private static final int K = 4;
+
+    private final TimeoutPolicy policy;
+    private double srtt;
+    private double rttvar;
+    private int samples;
+    private volatile int timeoutMs;
+
+    RttEstimator(@NotNull TimeoutPolicy policy) {
+        this.policy = policy;
+        this.timeoutMs = policy.initialMs();
+    }
+
+    /**
+     * @return the deadline in milliseconds for the next connect
+     */
+    public int timeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * Records the RTT of a connect that was answered (OPEN or CLOSED).
+     *
+     * @param rttMs the measured round-trip time in milliseconds
+     */
+    public void onReply(long rttMs) {
+        if (!policy.adaptive()) return;
+        synchronized (this) {
+            double r = Math.max(0, rttMs);
+            if (samples == 0) {
+                srtt = r;
+                rttvar = r / 2;
+            } else {
+                rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - r);
+                srtt = (1 - ALPHA) * srtt + ALPHA * r;
+            }
+            samples++;
+            // 1 ms clock granularity, as G in RFC 6298
+            long rto = (long) Math.ceil(srtt + Math.max(1, K * rttvar));
+            if (samples < policy.minSamples()) rto = Math.max(rto, policy.initialMs());
+            timeoutMs = clamp(rto);
+        }
+    }
+
+    /**
+     * Records a connect that hit its deadline.
+     *
+     * @param usedTimeoutMs the deadline the connect was started with; only timeouts at the
+     *                      current deadline back off, so a burst of timeouts doubles it once
+     */
+    public void onTimeout(int usedTimeoutMs) {
+        if (!policy.adaptive()) return;
+        synchronized (this) {
+            if (samples == 0 && usedTimeoutMs >= timeoutMs) timeoutMs = clamp(2L * timeoutMs);
+        }
+    }
+
+    /**
+     * @return the number of RTT samples seen so far
+     */
+    public synchronized int samples() {
+        return samples;
+    }
+
+    private int clamp(long ms) {
+        return (int) Math.max(policy.minMs(), Math.min(policy.maxMs(), ms));
+    }
+}
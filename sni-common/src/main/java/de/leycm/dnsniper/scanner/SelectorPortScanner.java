@@ -0,0 +1,250 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import de.leycm.dnsniper.port.PortResult;
+import de.leycm.dnsniper.port.PortScannerApi.PortStatus;
+import de.leycm.dnsniper.port.PortSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking TCP connect engine based on {@link SocketChannel} and {@link Selector}.
+ * <p>
+ * Instead of parking one thread per port inside {@code Socket.connect}, this engine keeps
+ * up to {@code maxInFlight} connects pending on a single selector and classifies each port
+ * from its connect-finish event:
+ * <ul>
+ *     <li>{@code finishConnect()} succeeds &rarr; {@link PortStatus#OPEN}</li>
+ *     <li>{@code finishConnect()} fails (RST, unreachable) &rarr; {@link PortStatus#CLOSED}</li>
+ *     <li>{@code connect()} fails locally (no route) &rarr; {@link PortStatus#CLOSED}</li>
+ *     <li>no event before the deadline &rarr; {@link PortStatus#TIMEOUT}</li>
+ * </ul>
+ * Each connect's deadline comes from the host's {@link RttEstimator}, so it may shrink or
+ * grow during the scan; only accepted and reset connects are fed to it as RTT samples.
+ * The event loop runs on the calling thread, so a scan costs exactly one thread no matter
+ * how many connects are in flight or how many hosts they target. Concurrent scans simply
+ * run concurrent loops.
+ * </p>
+ */
+public class SelectorPortScanner {
+
+    private final int maxInFlight;
+
+    /**
+     * Constructs a SelectorPortScanner.
+     *
+     * @param maxInFlight the maximum number of connects pending at the same time
+     */
+    public SelectorPortScanner(int maxInFlight) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight > 0 required");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Probes the given ports on the target address and hands every result to the sink
+     * as soon as it is classified. Blocks until all ports are done.
+     * <p>
+     * The sink is invoked on the calling thread, in completion order.
+     * </p>
+     *
+     * @param address  the target {@link InetAddress}
+     * @param ports    the ports to probe
+     * @param timeouts the {@link RttEstimator} providing each connect's deadline, fed with every outcome that reached the network
+     * @param sink     receives each {@link PortResult}
+     */
+    public void scan(InetAddress address, @NotNull PortSet ports, @NotNull RttEstimator timeouts,
+                     @NotNull Consumer<PortResult> sink) {
+        HostScan host = new HostScan(address, ports, timeouts, sink);
+        scan(new ProbeScheduler(List.of(host), maxInFlight));
+    }
+
+    /**
+     * Runs all probes of the scheduler, interleaved across its hosts, within this engine's window.
+     */
+    void scan(@NotNull ProbeScheduler scheduler) {
+        try (Selector selector = Selector.open()) {
+            run(selector, scheduler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void run(Selector selector, ProbeScheduler scheduler) throws IOException {
+        // deadlines differ per probe once the timeout adapts, so order pending probes by deadline;
+        // completed probes are dropped lazily when they reach the head
+        PriorityQueue<Probe> pending = new PriorityQueue<>(Comparator.comparingLong(p -> p.deadlineNanos));
+        int window = maxInFlight;
+        int inFlight = 0;
+        SocketChannel spare = null;
+
+        while (inFlight > 0 || !scheduler.exhausted()) {
+            if (Thread.currentThread().isInterrupted()) break;
+
+            while (inFlight < window) {
+                // open the channel before claiming a probe so a failed open never loses a port;
+                // an unused channel is kept for the next round
+                if (spare == null) {
+                    try {
+                        spare = SocketChannel.open();
+                    } catch (IOException e) {
+                        // out of file descriptors: shrink the window to what we can sustain
+                        if (inFlight == 0) throw e;
+                        window = inFlight;
+                        break;
+                    }
+                }
+                long slot = scheduler.next();
+                if (slot < 0) break;
+                SocketChannel channel = spare;
+                spare = null;
+                HostScan host = scheduler.host(slot);
+                Probe probe = new Probe(host, ProbeScheduler.port(slot), host.timeouts.timeoutMs(), System.nanoTime());
+                if (connect(channel, selector, probe, scheduler)) {
+                    pending.add(probe);
+                    inFlight++;
+                }
+            }
+
+            Probe head = pending.peek();
+            if (head == null) {
+                selector.selectNow();
+            } else {
+                selector.select(Math.max(1, (head.deadlineNanos - System.nanoTime()) / 1_000_000L));
+            }
+
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                PortStatus status = finish(key);
+                if (status == null) continue;
+                complete((Probe) key.attachment(), status, scheduler);
+                inFlight--;
+            }
+
+            long now = System.nanoTime();
+            while ((head = pending.peek()) != null) {
+                if (head.done) {
+                    pending.poll();
+                    continue;
+                }
+                if (now - head.deadlineNanos < 0) break;
+                pending.poll();
+                // the connect may have finished after the last select returned
+                PortStatus status = finish(head.key);
+                complete(head, status != null ? status : PortStatus.TIMEOUT, scheduler);
+                inFlight--;
+            }
+        }
+
+        for (Probe probe : pending) {
+            if (!probe.done) close(probe.key);
+        }
+        if (spare != null) spare.close();
+    }
+
+    /**
+     * Starts a non-blocking connect.
+     *
+     * @return {@code true} if the probe is now pending on the selector,
+     *         {@code false} if it was classified immediately
+     */
+    private boolean connect(SocketChannel channel, Selector selector, Probe probe, ProbeScheduler scheduler) {
+        try {
+            channel.configureBlocking(false);
+            // RST on close instead of FIN, so open ports don't pile up in TIME_WAIT
+            channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+            if (channel.connect(new InetSocketAddress(probe.host.address, probe.port))) {
+                channel.close();
+                complete(probe, PortStatus.OPEN, scheduler);
+                return false;
+            }
+            probe.key = channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            return true;
+        } catch (IOException e) {
+            // failed right away: nothing was timed, so the host's estimator is not fed
+            probe.done = true;
+            long ping = (System.nanoTime() - probe.startNanos) / 1_000_000;
+            if (ProbeScheduler.refused(e)) scheduler.classify(probe.host, probe.port, PortStatus.CLOSED, ping);
+            else scheduler.unreachable(probe.host, probe.port, ping);
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        return false;
+    }
+
+    /**
+     * Completes a pending connect if possible.
+     *
+     * @return the classified status, or {@code null} if the connect is still pending
+     */
+    private PortStatus finish(@NotNull SelectionKey key) {
+        try {
+            return ((SocketChannel) key.channel()).finishConnect() ? PortStatus.OPEN : null;
+        } catch (IOException e) {
+            if (!ProbeScheduler.refused(e)) ((Probe) key.attachment()).unreachable = true;
+            return PortStatus.CLOSED;
+        }
+    }
+
+    private void complete(@NotNull Probe probe, PortStatus status, @NotNull ProbeScheduler scheduler) {
+        probe.done = true;
+        close(probe.key);
+        long ping = (System.nanoTime() - probe.startNanos) / 1_000_000;
+        if (probe.unreachable) scheduler.unreachable(probe.host, probe.port, ping);
+        else scheduler.complete(probe.host, probe.port, status, ping, probe.timeoutMs);
+    }
+
+    private void close(SelectionKey key) {
+        if (key == null) return;
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * A single pending connect.
+     */
+    private static final class Probe {
+        final HostScan host;
+        final int port;
+        final int timeoutMs;
+        final long startNanos;
+        final long deadlineNanos;
+        SelectionKey key;
+        boolean done;
+        boolean unreachable; // failed without a reset, so no round trip was measured
+
+        Probe(HostScan host, int port, int timeoutMs, long startNanos) {
+            this.host = host;
+            this.port = port;
+            this.timeoutMs = timeoutMs;
+            this.startNanos = startNanos;
+            this.deadlineNanos = startNanos + timeoutMs * 1_000_000L;
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package de.leycm.dnsniper.scanner;
 
+import de.leycm.dnsniper.dns.DnsScanResult;
+import de.leycm.dnsniper.event.ScanEvent;
+import de.leycm.dnsniper.event.ScanEventLevel;
+import de.leycm.dnsniper.event.ScanEventSink;
+import de.leycm.dnsniper.util.AsyncDnsClient;
+import de.leycm.dnsniper.util.DnsCodec;
+import de.leycm.dnsniper.util.DnsMessage;
+import de.leycm.dnsniper.util.ExecutionMode;
+import de.leycm.dnsniper.util.ZoneTransfer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.net.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
 
 public class SubdomainScannerImpl {
@@ -16,51 +27,123 @@ public class SubdomainScannerImpl {
     public static final String DEFAULT_WORDLIST_URL =
             "https://raw.githubusercontent.com/n0kovo/n0kovo_subdomains/refs/heads/main/n0kovo_subdomains_tiny.txt";
 
+    /**
+     * System property used by the constructors without an {@link Engine} to pick one
+     * (e.g. {@code -Ddnsniper.subdomain.engine=udp}).
+     */
+    public static final String ENGINE_PROPERTY = "dnsniper.subdomain.engine";
+
+    /**
+     * Default number of queries in flight with the {@link Engine#UDP} engine.
+     */
+    public static final int DEFAULT_UDP_WINDOW = 4096;
+
+    /**
+     * Default number of queries per second sent to each authoritative name server.
+     */
+    public static final int DEFAULT_AUTHORITATIVE_RATE = 500;
+
+    /**
+     * Number of lookup timeouts a zone transfer or an NSEC walk may take in total before the
+     * scan falls back to the next strategy.
+     */
+    public static final int ZONE_LISTING_BUDGET = 30;
+
+    private final Engine engine;
     private final int maxConcurrentLookups;
     private final Duration lookupTimeout;
     private final int httpConnectTimeoutMs;
     private final int httpReadTimeoutMs;
 
     private final ExecutorService lookupExecutor;
-
-    private final List<String> cachedWordlist;
+    private volatile ScanEventSink events = ScanEventSink.noop();
+    private volatile AsyncDnsClient dnsClient;
+    private volatile boolean wildcardFiltering = true;
+    private volatile boolean authoritative;
+    private volatile List<InetSocketAddress> authoritativeServers;
+    private volatile int authoritativeRate = DEFAULT_AUTHORITATIVE_RATE;
+    private volatile Set<Strategy> strategies = EnumSet.allOf(Strategy.class);
+    private AsyncDnsClient recursiveClient;
+
+    private final MappedWordlist cachedWordlist;
     private final String cachedSourceUrl;
     private final String cachedLocalFilePath;
 
     public SubdomainScannerImpl() throws IOException {
-        this(DEFAULT_WORDLIST_URL, null, Math.max(50, Runtime.getRuntime().availableProcessors() * 4), Duration.ofSeconds(3));
+        this(DEFAULT_WORDLIST_URL, null);
     }
 
     public SubdomainScannerImpl(String wordlistUrl, String localFilePath) throws IOException {
-        this(wordlistUrl, localFilePath, Math.max(50, Runtime.getRuntime().availableProcessors() * 4), Duration.ofSeconds(3));
+        this(wordlistUrl, localFilePath, Engine.fromProperty());
+    }
+
+    /**
+     * Uses a window of {@value #DEFAULT_UDP_WINDOW} queries with the {@link Engine#UDP} engine,
+     * and {@code max(50, cores * 4)} concurrent lookups with the {@link Engine#SYSTEM} engine.
+     */
+    public SubdomainScannerImpl(String wordlistUrl, String localFilePath, @NotNull Engine engine) throws IOException {
+        this(wordlistUrl, localFilePath,
+                engine == Engine.UDP ? DEFAULT_UDP_WINDOW : Math.max(50, Runtime.getRuntime().availableProcessors() * 4),
+                Duration.ofSeconds(3), engine, ExecutionMode.fromProperty());
     }
 
     public SubdomainScannerImpl(String wordlistUrl, String localFilePath, int maxConcurrentLookups, Duration lookupTimeout) throws IOException {
+        this(wordlistUrl, localFilePath, maxConcurrentLookups, lookupTimeout, ExecutionMode.fromProperty());
+    }
+
+    /**
+     * In {@link ExecutionMode#VIRTUAL} mode every lookup runs on its own virtual thread, so
+     * {@code maxConcurrentLookups} can be raised into the thousands without growing a thread pool.
+     * In {@link ExecutionMode#PLATFORM} mode lookups run on a fixed pool of
+     * {@code maxConcurrentLookups} daemon threads.
+     */
+    public SubdomainScannerImpl(String wordlistUrl, String localFilePath, int maxConcurrentLookups, Duration lookupTimeout,
+                                @NotNull ExecutionMode mode) throws IOException {
+        this(wordlistUrl, localFilePath, maxConcurrentLookups, lookupTimeout, Engine.fromProperty(), mode);
+    }
+
+    /**
+     * With the {@link Engine#UDP} engine, {@code maxConcurrentLookups} is the number of queries in
+     * flight and the {@link ExecutionMode} is unused unless {@link #setResolvers(List)} switches
+     * back to the system resolver.
+     */
+    public SubdomainScannerImpl(String wordlistUrl, String localFilePath, int maxConcurrentLookups, Duration lookupTimeout,
+                                @NotNull Engine engine, @NotNull ExecutionMode mode) throws IOException {
         if (maxConcurrentLookups <= 0) throw new IllegalArgumentException("maxConcurrentLookups > 0 required");
+        this.engine = engine;
         this.maxConcurrentLookups = maxConcurrentLookups;
         this.lookupTimeout = Objects.requireNonNull(lookupTimeout);
         this.httpConnectTimeoutMs = 10_000;
         this.httpReadTimeoutMs = 120_000;
-        this.lookupExecutor = Executors.newCachedThreadPool(r -> {
-            Thread t = new Thread(r);
-            t.setDaemon(true);
-            return t;
-        });
+        this.lookupExecutor = mode.newExecutor("subdomain-scan", maxConcurrentLookups);
+
+        if (engine == Engine.UDP) this.dnsClient = newClient(AsyncDnsClient.systemResolvers());
 
         this.cachedSourceUrl = (wordlistUrl != null && !wordlistUrl.isBlank()) ? wordlistUrl : null;
         this.cachedLocalFilePath = (localFilePath != null && !localFilePath.isBlank()) ? localFilePath : null;
-        this.cachedWordlist = Collections.unmodifiableList(loadWordlist(this.cachedSourceUrl, this.cachedLocalFilePath));
+        this.cachedWordlist = loadWordlist(this.cachedSourceUrl, this.cachedLocalFilePath);
     }
 
     public List<String> scanDomain(String rootDomain) {
         if (rootDomain == null || rootDomain.isBlank()) throw new IllegalArgumentException("rootDomain required");
 
-        return scanWithIterator(rootDomain, cachedWordlist.iterator());
+        Set<Strategy> enabled = strategies;
+        List<InetSocketAddress> servers = authoritativeServers(rootDomain, enabled);
+        List<String> listed = listZone(rootDomain, enabled, servers);
+        if (listed != null) return listed;
+        if (!enabled.contains(Strategy.WORDLIST)) return List.of();
+        return scanWithIterator(rootDomain, cachedWordlist.iterator(), servers);
     }
 
     public List<String> scanDomain(String rootDomain, String wordlistUrl, String localFilePath) throws IOException {
         if (rootDomain == null || rootDomain.isBlank()) throw new IllegalArgumentException("rootDomain required");
 
+        Set<Strategy> enabled = strategies;
+        List<InetSocketAddress> servers = authoritativeServers(rootDomain, enabled);
+        List<String> listed = listZone(rootDomain, enabled, servers);
+        if (listed != null) return listed;
+        if (!enabled.contains(Strategy.WORDLIST)) return List.of();
+
         boolean useCache;
         if (wordlistUrl != null && !wordlistUrl.isBlank()) {
             useCache = wordlistUrl.equalsIgnoreCase(cachedSourceUrl);
@@ -70,25 +153,138 @@ public class SubdomainScannerImpl {
             useCache = true;
         }
 
-        if (useCache) return scanWithIterator(rootDomain, cachedWordlist.iterator());
+        if (useCache) return scanWithIterator(rootDomain, cachedWordlist.iterator(), servers);
+
+        try (MappedWordlist singleUse = loadWordlist(wordlistUrl, localFilePath)) {
+            return scanWithIterator(rootDomain, singleUse.iterator(), servers);
+        }
+    }
+
+    /**
+     * Finds the authoritative servers once per scan, if a strategy or authoritative mode needs them.
+     *
+     * @return the configured or discovered servers, empty if there are none or none are needed
+     */
+    private @NotNull List<InetSocketAddress> authoritativeServers(String rootDomain, @NotNull Set<Strategy> enabled) {
+        List<InetSocketAddress> servers = authoritativeServers;
+        if (servers != null) return servers;
+        boolean listing = enabled.contains(Strategy.AXFR) || enabled.contains(Strategy.NSEC);
+        boolean direct = authoritative && enabled.contains(Strategy.WORDLIST);
+        if (!listing && !direct) return List.of();
+        AsyncDnsClient client = dnsClient != null ? dnsClient : recursiveClient();
+        try {
+            return AuthoritativeResolver.discover(client, rootDomain.toLowerCase(Locale.ROOT),
+                    (int) Math.max(1, lookupTimeout.toMillis())).join();
+        } catch (CompletionException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Runs the {@link Strategy#AXFR} and {@link Strategy#NSEC} strategies that are enabled,
+     * each within {@value #ZONE_LISTING_BUDGET} lookup timeouts.
+     *
+     * @return the names below the domain, or {@code null} if no strategy could list the zone
+     */
+    private @Nullable List<String> listZone(String rootDomain, @NotNull Set<Strategy> enabled,
+                                            @NotNull List<InetSocketAddress> servers) {
+        if (!enabled.contains(Strategy.AXFR) && !enabled.contains(Strategy.NSEC)) return null;
+        AsyncDnsClient client = dnsClient != null ? dnsClient : recursiveClient();
+        int timeoutMs = (int) Math.max(1, lookupTimeout.toMillis());
+        long budgetMs = (long) timeoutMs * ZONE_LISTING_BUDGET;
+        String root = rootDomain.toLowerCase(Locale.ROOT);
+
+        if (enabled.contains(Strategy.AXFR)) {
+            // one budget for all servers, not one per server
+            long deadline = System.nanoTime() + budgetMs * 1_000_000L;
+            for (InetSocketAddress server : servers) {
+                long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remainingMs <= 0) {
+                    publish(ScanEventLevel.DEBUG, "Zone transfer of " + root + " not possible within its budget");
+                    break;
+                }
+                try {
+                    List<String> names = below(ZoneTransfer.ownerNames(server, root,
+                            (int) Math.min(timeoutMs, remainingMs), remainingMs), root);
+                    publish(ScanEventLevel.INFO, "Zone transfer of " + root + " from " + server + " listed "
+                            + names.size() + " names");
+                    return names;
+                } catch (IOException e) {
+                    publish(ScanEventLevel.DEBUG, "Zone transfer of " + root + " from " + server + " failed: "
+                            + e.getMessage());
+                }
+            }
+        }
 
-        try (BufferedReader reader = openReader(wordlistUrl, localFilePath)) {
-            List<String> singleUse = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String candidate = sanitizeLine(line);
-                if (candidate != null) singleUse.add(candidate);
+        if (enabled.contains(Strategy.NSEC)) {
+            InetSocketAddress server = servers.isEmpty() ? null : servers.getFirst();
+            // ask an authoritative server if there is one; resolvers may strip or cache NSEC records
+            List<String> names = NsecWalker.walk(name -> server == null
+                    ? client.query(name, NsecWalker.TYPE_NSEC, msg -> NsecWalker.nextName(msg, name))
+                    : client.query(name, NsecWalker.TYPE_NSEC, server, timeoutMs, msg -> NsecWalker.nextName(msg, name)),
+                    root, NsecWalker.DEFAULT_MAX_NAMES, System.nanoTime() + budgetMs * 1_000_000L);
+            if (names != null) {
+                names = below(names, root);
+                publish(ScanEventLevel.INFO, "NSEC walk of " + root + " listed " + names.size() + " names");
+                return names;
             }
-            return scanWithIterator(rootDomain, singleUse.iterator());
+            publish(ScanEventLevel.DEBUG, "NSEC walk of " + root + " not possible within its budget");
         }
+        return null;
     }
 
-    private @NotNull List<String> scanWithIterator(String rootDomain, @NotNull Iterator<String> candidates) {
+    /**
+     * @return the names strictly below the root, without wildcard owners, sorted
+     */
+    private static @NotNull List<String> below(@NotNull Collection<String> names, @NotNull String root) {
+        String suffix = "." + root;
+        TreeSet<String> out = new TreeSet<>();
+        for (String name : names) {
+            if (name.endsWith(suffix) && !name.startsWith("*.") && name.indexOf('\0') < 0) out.add(name);
+        }
+        return new ArrayList<>(out);
+    }
+
+    private void publish(@NotNull ScanEventLevel level, @NotNull String text) {
+        ScanEventSink sink = events;
+        if (sink.isEnabled(level)) {
+            sink.publish(new ScanEvent.Message(System.currentTimeMillis(), level, "subdomain", text));
+        }
+    }
+
+    private @NotNull List<String> scanWithIterator(String rootDomain, @NotNull Iterator<String> candidates,
+                                                   @NotNull List<InetSocketAddress> servers) {
+        AsyncDnsClient client = dnsClient;
+        AuthoritativeResolver direct = authoritative ? newAuthoritativeResolver(rootDomain, servers) : null;
+        Function<String, CompletableFuture<Set<String>>> resolver = null;
+        if (direct != null) resolver = name -> direct.query(name, DnsCodec.TYPE_A, SubdomainScannerImpl::answerOf);
+        else if (client != null) resolver = name -> client.query(name, DnsCodec.TYPE_A, SubdomainScannerImpl::answerOf);
+
+        WildcardDetector wildcards = newWildcardDetector(resolver);
+        // probe the root before the first candidate is sent
+        if (wildcards != null) wildcards.prepare(rootDomain);
+        List<String> found = resolver != null
+                ? scanWithResolver(rootDomain, candidates, resolver, wildcards)
+                : scanWithSystemResolver(rootDomain, candidates, wildcards);
+
+        ScanEventSink sink = events;
+        if (direct != null && sink.isEnabled(ScanEventLevel.INFO)) {
+            sink.publish(new ScanEvent.Message(System.currentTimeMillis(), ScanEventLevel.INFO, "subdomain",
+                    "Authoritative servers answered " + direct.directCount() + " queries, recursive resolvers "
+                            + direct.recursiveCount()));
+        }
+        return found;
+    }
+
+    private @NotNull List<String> scanWithSystemResolver(String rootDomain, @NotNull Iterator<String> candidates,
+                                                         @Nullable WildcardDetector wildcards) {
         Semaphore inFlight = new Semaphore(maxConcurrentLookups);
-        CompletionService<Optional<String>> completion = new ExecutorCompletionService<>(lookupExecutor);
-        List<String> found = Collections.synchronizedList(new ArrayList<>());
+        CompletionService<Void> completion = new ExecutorCompletionService<>(lookupExecutor);
+        Map<String, Set<String>> found = new ConcurrentHashMap<>();
         AtomicInteger submitted = new AtomicInteger(0);
 
+        ScanEventSink sink = events;
+        boolean trace = sink.isEnabled(ScanEventLevel.TRACE);
         int c = 0;
 
         while (candidates.hasNext()) {
@@ -97,8 +293,9 @@ public class SubdomainScannerImpl {
             if (candidate == null || candidate.isBlank()) continue;
 
             final String fqdn = candidate + "." + rootDomain;
+            final String parent = parentOf(fqdn);
 
-            System.out.println("Scanning " + fqdn + "[" + c + "]");
+            if (trace) sink.publish(new ScanEvent.CandidateQueued(System.currentTimeMillis(), fqdn, c));
 
             try {
                 inFlight.acquire();
@@ -107,11 +304,18 @@ public class SubdomainScannerImpl {
                 break;
             }
 
+            if (wildcards != null) {
+                // wait for the parent's probes here, so no lookup thread blocks on them
+                wildcards.prepare(parent).join();
+                wildcards.observe(parent);
+            }
             submitted.incrementAndGet();
             completion.submit(() -> {
                 try {
-                    boolean ok = resolves(fqdn, lookupTimeout);
-                    return ok ? Optional.of(fqdn) : Optional.empty();
+                    Set<String> answer = systemAnswer(fqdn);
+                    if (wildcards != null && !answer.isEmpty()) answer = wildcards.screen(parent, answer).join();
+                    if (!answer.isEmpty()) found.put(fqdn, answer);
+                    return null;
                 } finally {
                     inFlight.release();
                 }
@@ -121,9 +325,7 @@ public class SubdomainScannerImpl {
         int toCollect = submitted.get();
         for (int i = 0; i < toCollect; i++) {
             try {
-                Future<Optional<String>> f = completion.take();
-                Optional<String> res = f.get();
-                res.ifPresent(found::add);
+                completion.take().get();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
@@ -131,42 +333,159 @@ public class SubdomainScannerImpl {
             }
         }
 
-        List<String> dedup = new ArrayList<>(new LinkedHashSet<>(found));
-        Collections.sort(dedup);
-        return dedup;
+        return collect(found, wildcards);
     }
 
-    private boolean resolves(String fqdn, @NotNull Duration timeout) {
-        Callable<Boolean> call = () -> {
-            try {
-                InetAddress addr = InetAddress.getByName(fqdn);
-                return addr != null;
-            } catch (Throwable t) {
-                return false;
-            }
-        };
-        Future<Boolean> f = lookupExecutor.submit(call);
+    /**
+     * Brute-forces with raw queries: up to {@code maxConcurrentLookups} are in flight on the
+     * client's single socket and each answer is classified where it arrives, so no thread
+     * waits on a candidate.
+     */
+    private @NotNull List<String> scanWithResolver(String rootDomain, @NotNull Iterator<String> candidates,
+                                                   @NotNull Function<String, CompletableFuture<Set<String>>> resolver,
+                                                   @Nullable WildcardDetector wildcards) {
+        Semaphore window = new Semaphore(maxConcurrentLookups);
+        Map<String, Set<String>> found = new ConcurrentHashMap<>();
+
+        ScanEventSink sink = events;
+        boolean trace = sink.isEnabled(ScanEventLevel.TRACE);
+        int c = 0;
+
         try {
-            return Boolean.TRUE.equals(f.get(timeout.toMillis(), TimeUnit.MILLISECONDS));
-        } catch (TimeoutException te) {
-            f.cancel(true);
-            return false;
-        } catch (InterruptedException ie) {
+            while (candidates.hasNext()) {
+                String candidate = candidates.next();
+                c++;
+                if (candidate == null || candidate.isBlank()) continue;
+
+                final String fqdn = candidate + "." + rootDomain;
+                final String parent = parentOf(fqdn);
+
+                if (trace) sink.publish(new ScanEvent.CandidateQueued(System.currentTimeMillis(), fqdn, c));
+
+                window.acquire();
+                CompletableFuture<Set<String>> answer = resolver.apply(fqdn);
+                if (wildcards != null) {
+                    wildcards.observe(parent);
+                    answer = answer.thenCompose(a -> a.isEmpty() ? CompletableFuture.completedFuture(a) : wildcards.screen(parent, a));
+                }
+                answer.whenComplete((a, error) -> {
+                    if (a != null && !a.isEmpty()) found.put(fqdn, a);
+                    window.release();
+                });
+            }
+            // wait for the queries still in flight
+            window.acquire(maxConcurrentLookups);
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return false;
-        } catch (ExecutionException ee) {
-            return false;
         }
+
+        return collect(found, wildcards);
     }
 
-    private @NotNull BufferedReader openReader(String wordlistUrl, String localFilePath) throws IOException {
-        if (localFilePath != null && !localFilePath.isBlank()) {
-            return java.nio.file.Files.newBufferedReader(java.nio.file.Path.of(localFilePath), StandardCharsets.UTF_8);
+    /**
+     * Drops hits that turned out to be wildcard answers after the fingerprint grew, and reports
+     * every wildcard found.
+     *
+     * @return the remaining names, sorted
+     */
+    private @NotNull List<String> collect(@NotNull Map<String, Set<String>> found, @Nullable WildcardDetector wildcards) {
+        if (wildcards != null) {
+            found.entrySet().removeIf(e -> wildcards.covers(parentOf(e.getKey()), e.getValue()));
+            ScanEventSink sink = events;
+            if (sink.isEnabled(ScanEventLevel.INFO)) {
+                wildcards.wildcards().forEach((parent, fingerprint) -> sink.publish(new ScanEvent.Message(
+                        System.currentTimeMillis(), ScanEventLevel.INFO, "subdomain",
+                        "Wildcard *." + parent + " -> " + fingerprint + ", dropped " + wildcards.filtered(parent) + " candidates")));
+            }
+        }
+        return new ArrayList<>(new TreeSet<>(found.keySet()));
+    }
+
+    /**
+     * @param resolver the resolver of the candidates, or {@code null} for the system resolver
+     */
+    private @Nullable WildcardDetector newWildcardDetector(@Nullable Function<String, CompletableFuture<Set<String>>> resolver) {
+        if (!wildcardFiltering) return null;
+        if (resolver == null) {
+            resolver = name -> CompletableFuture.supplyAsync(() -> systemAnswer(name), lookupExecutor);
         }
+        return new WildcardDetector(resolver, WildcardDetector.DEFAULT_REPROBE_INTERVAL);
+    }
+
+    /**
+     * @param servers the servers found by {@link #authoritativeServers(String, Set)}
+     * @return the resolver for the servers, or {@code null} if there are none
+     */
+    private @Nullable AuthoritativeResolver newAuthoritativeResolver(String rootDomain,
+                                                                     @NotNull List<InetSocketAddress> servers) {
+        AsyncDnsClient client = dnsClient != null ? dnsClient : recursiveClient();
+        int timeoutMs = (int) Math.max(1, lookupTimeout.toMillis());
+        if (servers.isEmpty()) {
+            ScanEventSink sink = events;
+            if (sink.isEnabled(ScanEventLevel.WARN)) {
+                sink.publish(new ScanEvent.Message(System.currentTimeMillis(), ScanEventLevel.WARN, "subdomain",
+                        "No responsive authoritative name server for " + rootDomain + ", using recursive resolvers"));
+            }
+            return null;
+        }
+        return new AuthoritativeResolver(client, servers, authoritativeRate, timeoutMs);
+    }
+
+    /**
+     * @return the client for the system resolvers used by the {@link Engine#SYSTEM} engine in
+     *         authoritative mode, created on first use
+     */
+    private synchronized @NotNull AsyncDnsClient recursiveClient() {
+        if (recursiveClient == null) recursiveClient = newClient(AsyncDnsClient.systemResolvers());
+        return recursiveClient;
+    }
+
+    /**
+     * A candidate exists if its A query answers NOERROR with at least one record; NXDOMAIN,
+     * NODATA, SERVFAIL and timeouts all count as absent.
+     *
+     * @return the answer as {@code "TYPE data"} strings with CNAMEs as their targets,
+     *         or an empty set if the candidate does not exist
+     */
+    private static @NotNull Set<String> answerOf(@NotNull ByteBuffer msg) {
+        if (DnsCodec.rcode(msg) != DnsMessage.RCODE_NOERROR || DnsCodec.answerCount(msg) == 0) return Set.of();
+        Set<String> answer = new HashSet<>();
+        DnsMessage.Records records = DnsMessage.wrap(msg).answers();
+        while (records.next()) {
+            int type = records.type();
+            if (type == DnsCodec.TYPE_CNAME) {
+                answer.add("CNAME " + records.targetName().toLowerCase(Locale.ROOT));
+            } else {
+                answer.add(DnsCodec.typeString(type) + " " + records.data());
+            }
+        }
+        return answer;
+    }
+
+    private static @NotNull String parentOf(@NotNull String fqdn) {
+        return fqdn.substring(fqdn.indexOf('.') + 1);
+    }
+
+    private @NotNull AsyncDnsClient newClient(@NotNull List<InetSocketAddress> resolvers) {
+        return new AsyncDnsClient(resolvers, (int) Math.max(1, lookupTimeout.toMillis()));
+    }
 
-        URL u = new URL(wordlistUrl);
-        InputStream is = getInputStream(wordlistUrl, u);
-        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+    /**
+     * Resolves through the system resolver on the calling thread. The resolver's own retry
+     * and timeout settings bound the lookup; {@code lookupTimeout} only applies to raw queries.
+     *
+     * @return the addresses as {@code "TYPE address"} strings, or an empty set if the name does not resolve
+     */
+    private static @NotNull Set<String> systemAnswer(String fqdn) {
+        try {
+            Set<String> answer = new HashSet<>();
+            for (InetAddress addr : InetAddress.getAllByName(fqdn)) {
+                answer.add((addr instanceof Inet6Address ? "AAAA " : "A ") + addr.getHostAddress());
+            }
+            return answer;
+        } catch (Throwable t) {
+            return Set.of();
+        }
     }
 
     private InputStream getInputStream(String wordlistUrl, @NotNull URL u) throws IOException {
@@ -183,37 +502,151 @@ public class SubdomainScannerImpl {
         return is;
     }
 
-    private @NotNull List<String> loadWordlist(String wordlistUrl, String localFilePath) throws IOException {
-        List<String> out = new ArrayList<>(100_000);
-        try (BufferedReader reader = openReader(
-                (wordlistUrl != null && !wordlistUrl.isBlank()) ? wordlistUrl : DEFAULT_WORDLIST_URL,
-                localFilePath)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String candidate = sanitizeLine(line);
-                if (candidate != null) out.add(candidate);
-            }
+    /**
+     * Maps the local file, or spools the remote list into a temporary file and maps that.
+     */
+    private @NotNull MappedWordlist loadWordlist(String wordlistUrl, String localFilePath) throws IOException {
+        if (localFilePath != null && !localFilePath.isBlank()) {
+            return MappedWordlist.open(java.nio.file.Path.of(localFilePath));
+        }
+
+        String url = (wordlistUrl != null && !wordlistUrl.isBlank()) ? wordlistUrl : DEFAULT_WORDLIST_URL;
+        try (InputStream is = getInputStream(url, new URL(url))) {
+            return MappedWordlist.spool(is);
         }
-        return out;
     }
 
-    private String sanitizeLine(String raw) {
-        if (raw == null) return null;
-        String s = raw.trim();
-        if (s.isEmpty()) return null;
-        if (s.startsWith("#")) return null;
-        s = s.replaceAll("^\\.+|\\.+$", "");
-        if (s.isEmpty()) return null;
-        if (!s.matches("[A-Za-z0-9\\-.]+")) return null;
-        return s;
+    /**
+     * Installs the sink receiving one {@link ScanEventLevel#TRACE} event per queued candidate.
+     *
+     * @param sink the sink, or {@link ScanEventSink#noop()} to disable events
+     */
+    public void setEventSink(@NotNull ScanEventSink sink) {
+        this.events = sink;
+    }
+
+    /**
+     * Enables or disables wildcard filtering. When enabled, every scan first resolves random
+     * labels under each parent name it tries candidates under and drops candidates whose
+     * addresses and CNAME targets match those of the random labels. Enabled by default.
+     *
+     * @param enabled {@code false} to report every name that resolves
+     */
+    public void setWildcardFiltering(boolean enabled) {
+        this.wildcardFiltering = enabled;
+    }
+
+    /**
+     * Selects the enumeration strategies. They are tried in the order of {@link Strategy}; the
+     * first one that lists the zone ends the chain. All are enabled by default.
+     *
+     * @param strategies the strategies to try
+     */
+    public void setStrategies(@NotNull Set<Strategy> strategies) {
+        this.strategies = strategies.isEmpty() ? EnumSet.noneOf(Strategy.class) : EnumSet.copyOf(strategies);
+    }
+
+    /**
+     * Enables or disables authoritative-direct resolution. When enabled, candidates are queried
+     * at the authoritative name servers of the scanned domain, spread over them within
+     * {@link #setAuthoritativeRateLimit(int) a rate limit per server}, instead of through the
+     * recursive resolvers. Names in delegated subzones, errors and timeouts are retried through
+     * the recursive resolvers. The servers are taken from
+     * {@link #setAuthoritativeServers(List)} or discovered at the start of each scan.
+     * Disabled by default.
+     *
+     * @param enabled {@code true} to query the authoritative servers directly
+     */
+    public void setAuthoritative(boolean enabled) {
+        this.authoritative = enabled;
+    }
+
+    /**
+     * @param servers the authoritative servers to query, or {@code null} to discover them per scan
+     */
+    public void setAuthoritativeServers(@Nullable List<InetSocketAddress> servers) {
+        this.authoritativeServers = servers == null ? null : List.copyOf(servers);
+    }
+
+    /**
+     * Uses the name servers that answered during a {@link DnsScannerImpl} scan of the zone apex.
+     *
+     * @param zone the scan result of the domain to enumerate
+     */
+    public void setAuthoritativeServers(@NotNull DnsScanResult zone) {
+        setAuthoritativeServers(AuthoritativeResolver.fromScan(zone));
+    }
+
+    /**
+     * @param queriesPerSecond the number of queries per second sent to each authoritative server
+     */
+    public void setAuthoritativeRateLimit(int queriesPerSecond) {
+        if (queriesPerSecond <= 0) throw new IllegalArgumentException("queriesPerSecond > 0 required");
+        this.authoritativeRate = queriesPerSecond;
+    }
+
+    /**
+     * Sends raw UDP queries to the given resolvers, as the {@link Engine#UDP} engine does.
+     *
+     * @param resolvers the resolvers, or {@code null} to go back to the default of the engine
+     */
+    public void setResolvers(@Nullable List<InetSocketAddress> resolvers) {
+        AsyncDnsClient previous = dnsClient;
+        if (resolvers != null) dnsClient = newClient(resolvers);
+        else dnsClient = engine == Engine.UDP ? newClient(AsyncDnsClient.systemResolvers()) : null;
+        if (previous != null) previous.close();
     }
 
     public void shutdown() {
         lookupExecutor.shutdownNow();
+        AsyncDnsClient client = dnsClient;
+        if (client != null) client.close();
+        synchronized (this) {
+            if (recursiveClient != null) recursiveClient.close();
+        }
+        try {
+            cachedWordlist.close();
+        } catch (IOException ignored) {
+            // only the temporary copy of a remote list is left behind
+        }
+    }
+
+    public @NotNull Engine engine() {
+        return engine;
     }
 
     public String cacheInfo() {
         return "cachedSourceUrl=" + cachedSourceUrl + ", cachedLocalFilePath=" + cachedLocalFilePath
                 + ", entries=" + cachedWordlist.size();
     }
+
+    /**
+     * Ways to enumerate the names below a domain, in the order they are tried.
+     */
+    public enum Strategy {
+        AXFR,     // Full zone transfer over TCP from each authoritative name server
+        NSEC,     // Walk the NSEC chain of a DNSSEC-signed zone, one query per name
+        WORDLIST  // Brute force with the wordlist
+    }
+
+    /**
+     * How candidates are resolved.
+     */
+    public enum Engine {
+        SYSTEM, // InetAddress.getByName on the lookup executor, through the JVM and OS resolver
+        UDP;    // Raw A queries to the resolvers with thousands in flight on one socket
+
+        /**
+         * Resolves the engine from the {@value SubdomainScannerImpl#ENGINE_PROPERTY} system property.
+         *
+         * @return the configured engine, or {@link #SYSTEM} if unset or unknown
+         */
+        public static @NotNull Engine fromProperty() {
+            String value = System.getProperty(ENGINE_PROPERTY, "");
+            for (Engine e : values()) {
+                if (e.name().equalsIgnoreCase(value.trim())) return e;
+            }
+            return SYSTEM;
+        }
+    }
 }
@@ -0,0 +1,64 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Connect timeout configuration of a {@link PortScannerImpl}.
+ * <p>
+ * A fixed policy uses {@code initialMs} for every port. An adaptive policy starts each host
+ * at {@code initialMs} and then derives the deadline from RTTs measured on OPEN and CLOSED
+ * replies of that host (see {@link RttEstimator}), kept within {@code [minMs, maxMs]}.
+ * </p>
+ *
+ * @param initialMs  the timeout used before enough RTT samples exist, and always when fixed
+ * @param minMs      the lower bound of the adaptive timeout
+ * @param maxMs      the upper bound of the adaptive timeout
+ * @param minSamples the number of RTT samples required before the timeout shrinks below {@code initialMs}
+ * @param adaptive   whether the timeout adapts to measured RTTs
+ */
+public record TimeoutPolicy(int initialMs, int minMs, int maxMs, int minSamples, boolean adaptive) {
+
+    public TimeoutPolicy {
+        if (initialMs <= 0) throw new IllegalArgumentException("initialMs > 0 required");
+        if (minMs <= 0 || minMs > maxMs) throw new IllegalArgumentException("0 < minMs <= maxMs required");
+        if (minSamples < 1) throw new IllegalArgumentException("minSamples >= 1 required");
+    }
+
+    /**
+     * @param timeoutMs the timeout for every port
+     * @return a policy that never adapts
+     */
+    @Contract("_ -> new")
+    public static @NotNull TimeoutPolicy fixed(int timeoutMs) {
+        return new TimeoutPolicy(timeoutMs, timeoutMs, timeoutMs, 1, false);
+    }
+
+    /**
+     * @param initialMs the timeout used until the first RTT samples of a host arrive
+     * @param minMs     the lower bound, e.g. 50 ms for LAN targets
+     * @param maxMs     the upper bound, e.g. 3000 ms for distant targets
+     * @return an adaptive policy requiring 3 samples before shrinking
+     */
+    @Contract("_, _, _ -> new")
+    public static @NotNull TimeoutPolicy adaptive(int initialMs, int minMs, int maxMs) {
+        return new TimeoutPolicy(initialMs, minMs, maxMs, 3, true);
+    }
+
+    /**
+     * @return a new estimator for one host
+     */
+    public @NotNull RttEstimator newEstimator() {
+        return new RttEstimator(this);
+    }
+}
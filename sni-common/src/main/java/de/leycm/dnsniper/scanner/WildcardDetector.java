@@ -0,0 +1,203 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.scanner;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Recognizes answers synthesized by wildcard records during subdomain enumeration.
+ * <p>
+ * For every parent name candidates are tried under, a few random labels that cannot exist
+ * are resolved first. Their answers (addresses and CNAME targets) form the parent's wildcard
+ * fingerprint; a candidate whose answer is covered by the fingerprint is dropped. Wildcards
+ * backed by rotating address pools are caught by probing again every {@code reprobeInterval}
+ * candidates and whenever an answer overlaps the fingerprint only partly, and by
+ * {@link #covers(String, Set)} once the scan is done.
+ * </p>
+ * <p>
+ * Answers are compared as sets of strings produced by the resolver function, so both the
+ * system resolver and raw queries can be screened as long as probes and candidates go
+ * through the same function. One detector serves one scan.
+ * </p>
+ */
+final class WildcardDetector {
+
+    static final int PROBES = 3;
+    static final int DEFAULT_REPROBE_INTERVAL = 5000;
+
+    private static final char[] LABEL_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+    private static final int LABEL_LENGTH = 20;
+
+    private final Function<String, CompletableFuture<Set<String>>> resolver;
+    private final int reprobeInterval;
+    private final Map<String, Parent> parents = new ConcurrentHashMap<>();
+
+    /**
+     * @param resolver        resolves a name to the set describing its answer, empty if it does not exist
+     * @param reprobeInterval the number of candidates under a wildcard parent between two probes
+     */
+    WildcardDetector(@NotNull Function<String, CompletableFuture<Set<String>>> resolver, int reprobeInterval) {
+        if (reprobeInterval <= 0) throw new IllegalArgumentException("reprobeInterval > 0 required");
+        this.resolver = resolver;
+        this.reprobeInterval = reprobeInterval;
+    }
+
+    /**
+     * Starts probing a parent name, if not done yet.
+     *
+     * @param parent the name candidates are tried under
+     * @return completes once the initial probes are answered
+     */
+    @NotNull CompletableFuture<Void> prepare(@NotNull String parent) {
+        return parent(parent).ready;
+    }
+
+    /**
+     * Counts a candidate under the parent and probes it again every {@code reprobeInterval}
+     * candidates while it has a wildcard.
+     */
+    void observe(@NotNull String parent) {
+        Parent p = parent(parent);
+        if (p.seen.incrementAndGet() % reprobeInterval == 0 && p.isWildcard()) reprobe(p);
+    }
+
+    /**
+     * Screens the answer of a candidate once the parent's initial probes are done.
+     *
+     * @param parent the parent name of the candidate
+     * @param answer the candidate's answer
+     * @return the answer, or an empty set if it is a wildcard answer
+     */
+    @NotNull CompletableFuture<Set<String>> screen(@NotNull String parent, @NotNull Set<String> answer) {
+        Parent p = parent(parent);
+        return p.ready.thenApply(v -> {
+            if (p.covers(answer)) {
+                p.filtered.increment();
+                return Collections.emptySet();
+            }
+            // a rotating pool answered with an address not seen yet
+            if (p.overlaps(answer)) reprobe(p);
+            return answer;
+        });
+    }
+
+    /**
+     * Checks an answer against everything learned so far, without waiting.
+     *
+     * @return {@code true} if the answer is a wildcard answer
+     */
+    boolean covers(@NotNull String parent, @NotNull Set<String> answer) {
+        Parent p = parents.get(parent);
+        if (p == null || !p.covers(answer)) return false;
+        p.filtered.increment();
+        return true;
+    }
+
+    /**
+     * @return the fingerprint of every parent with a wildcard
+     */
+    @NotNull Map<String, Set<String>> wildcards() {
+        Map<String, Set<String>> out = new HashMap<>();
+        parents.forEach((name, p) -> {
+            if (p.isWildcard()) out.put(name, Set.copyOf(p.fingerprint));
+        });
+        return out;
+    }
+
+    /**
+     * @return the number of answers dropped under the parent
+     */
+    long filtered(@NotNull String parent) {
+        Parent p = parents.get(parent);
+        return p == null ? 0 : p.filtered.sum();
+    }
+
+    private Parent parent(String name) {
+        Parent p = parents.get(name);
+        if (p != null) return p;
+        Parent created = new Parent(name);
+        p = parents.putIfAbsent(name, created);
+        if (p != null) return p;
+        CompletableFuture<?>[] probes = new CompletableFuture<?>[PROBES];
+        for (int i = 0; i < PROBES; i++) probes[i] = probe(created);
+        CompletableFuture.allOf(probes).whenComplete((v, e) -> created.ready.complete(null));
+        return created;
+    }
+
+    private void reprobe(Parent p) {
+        if (!p.reprobing.compareAndSet(false, true)) return;
+        probe(p).whenComplete((v, e) -> p.reprobing.set(false));
+    }
+
+    private CompletableFuture<Void> probe(Parent p) {
+        CompletableFuture<Set<String>> answer;
+        try {
+            answer = resolver.apply(randomLabel() + "." + p.name);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // a failed probe teaches nothing; the parent simply stays without wildcard
+        return answer.handle((set, error) -> {
+            if (set != null) p.fingerprint.addAll(set);
+            return null;
+        });
+    }
+
+    private static String randomLabel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] label = new char[LABEL_LENGTH];
+        for (int i = 0; i < label.length; i++) label[i] = LABEL_CHARS[random.nextInt(LABEL_CHARS.length)];
+        return new String(label);
+    }
+
+    /**
+     * Probe state of one parent name.
+     */
+    private static final class Parent {
+        final String name;
+        final Set<String> fingerprint = ConcurrentHashMap.newKeySet();
+        final CompletableFuture<Void> ready = new CompletableFuture<>();
+        final AtomicInteger seen = new AtomicInteger();
+        final AtomicBoolean reprobing = new AtomicBoolean();
+        final LongAdder filtered = new LongAdder();
+
+        Parent(String name) {
+            this.name = name;
+        }
+
+        boolean isWildcard() {
+            return !fingerprint.isEmpty();
+        }
+
+        boolean covers(Set<String> answer) {
+            return !answer.isEmpty() && isWildcard() && fingerprint.containsAll(answer);
+        }
+
+        boolean overlaps(Set<String> answer) {
+            for (String s : answer) {
+                if (fingerprint.contains(s)) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,610 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import de.leycm.dnsniper.dns.DnsRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Asynchronous DNS client multiplexing any number of queries over one UDP socket.
+ * <p>
+ * Queries are sent from the calling thread and registered in an in-flight table indexed by
+ * transaction ID, so every ID is unique among the queries in flight. A single reader thread
+ * receives all responses and completes the matching query only if the response comes from
+ * the queried server and echoes the query's question, so concurrent lookups can never see
+ * each other's answers and spoofed or stale datagrams are dropped.
+ * </p>
+ * <p>
+ * The hot path does not allocate beyond the returned future: queries are encoded straight
+ * into pooled direct buffers, responses are received into one reused buffer and matched by a
+ * hash of their question, and deadlines are enforced by the reader thread sweeping the occupied
+ * slots of the table, which a bitmap tracks so that idle slots cost nothing.
+ * A {@link ResponseHandler} can inspect a response in place without copying it.
+ * </p>
+ * <p>
+ * Queries advertise an EDNS0 UDP payload of {@value #DEFAULT_UDP_PAYLOAD_SIZE} bytes, so large
+ * answers arrive in a single datagram. A response that is truncated nevertheless is retried
+ * over TCP on a persistent, pipelined connection per server that is shared by all queries.
+ * </p>
+ * <p>
+ * Lookups without an explicit server go through a {@link ResolverPool}: each is sent to the
+ * resolver with the best latency and failure score, hedged to the runner-up once the leader's
+ * latency percentile has elapsed, and moved on to the next resolver as soon as an attempt fails.
+ * </p>
+ * <p>
+ * Futures are completed on the reader thread; use the {@code *Async} stages for heavy
+ * follow-up work.
+ * </p>
+ */
+public final class AsyncDnsClient implements AutoCloseable {
+
+    /**
+     * EDNS0 UDP payload size advertised by default; avoids IP fragmentation on common paths.
+     */
+    public static final int DEFAULT_UDP_PAYLOAD_SIZE = 1232;
+
+    private static final int MAX_MESSAGE = 0xFFFF;
+    private static final int SLOTS = 1 << 16;
+    private static final int MAX_IN_FLIGHT = SLOTS / 2;
+    private static final long SWEEP_INTERVAL_MS = 10;
+
+    private final ResolverPool pool;
+    private final int timeoutMs;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ByteBufferPool buffers = new ByteBufferPool(DnsCodec.MAX_QUERY_LENGTH, 256);
+    private final AtomicReferenceArray<Query<?>> slots = new AtomicReferenceArray<>(SLOTS);
+    private final AtomicLongArray occupied = new AtomicLongArray(SLOTS / 64); // slots the sweep visits
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Thread reader;
+    private final ConcurrentHashMap<InetSocketAddress, DnsTcpConnection> tcp = new ConcurrentHashMap<>();
+    private volatile DnsCache cache;
+    private volatile int udpPayloadSize = DEFAULT_UDP_PAYLOAD_SIZE;
+    private volatile boolean tcpFallback = true;
+
+    /**
+     * Creates a client for the system resolvers with a 3000 ms timeout per attempt.
+     */
+    public AsyncDnsClient() {
+        this(systemResolvers(), 3000);
+    }
+
+    /**
+     * @param resolvers the resolvers, ranked by a {@link ResolverPool} with default hedging
+     * @param timeoutMs the timeout of each attempt
+     */
+    public AsyncDnsClient(@NotNull List<InetSocketAddress> resolvers, int timeoutMs) {
+        this(new ResolverPool(resolvers), timeoutMs);
+    }
+
+    /**
+     * @param pool      the resolvers to ask
+     * @param timeoutMs the timeout of each attempt
+     */
+    public AsyncDnsClient(@NotNull ResolverPool pool, int timeoutMs) {
+        if (timeoutMs <= 0) throw new IllegalArgumentException("timeoutMs > 0 required");
+        this.pool = pool;
+        this.timeoutMs = timeoutMs;
+        try {
+            this.channel = DatagramChannel.open();
+            // room for thousands of pipelined queries and their answers
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, 1 << 20);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 << 20);
+            channel.bind(null);
+            channel.configureBlocking(false);
+            this.selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.reader = Thread.ofPlatform().name("dns-client").daemon().start(this::receiveLoop);
+    }
+
+    /**
+     * Looks up records at the best-scored resolvers until one answers.
+     *
+     * @param name the domain name, with or without trailing dot
+     * @param type the query type, e.g. {@link DnsCodec#TYPE_MX}
+     * @return the records of the first response, or of the {@link #setCache(DnsCache) cache};
+     *         completes exceptionally with a {@link TimeoutException} or {@link IOException}
+     *         if no resolver answers
+     */
+    public @NotNull CompletableFuture<List<DnsRecord>> lookup(@NotNull String name, int type) {
+        DnsCache cache = this.cache;
+        if (cache == null) return exchange(name, type, msg -> DnsMessage.wrap(msg).toRecords(type));
+
+        List<DnsRecord> cached = cache.get(name, type);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        return exchange(name, type, msg -> {
+            DnsMessage response = DnsMessage.wrap(msg);
+            List<DnsRecord> records = response.toRecords(type);
+            cache.put(name, type, response, records);
+            return records;
+        });
+    }
+
+    /**
+     * Looks up records at one specific server.
+     *
+     * @param name      the domain name, with or without trailing dot
+     * @param type      the query type
+     * @param server    the server to ask
+     * @param timeoutMs the timeout of the query
+     * @return the records of the response
+     */
+    public @NotNull CompletableFuture<List<DnsRecord>> lookup(@NotNull String name, int type,
+                                                            @NotNull InetSocketAddress server, int timeoutMs) {
+        return query(name, type, server, timeoutMs, msg -> DnsMessage.wrap(msg).toRecords(type));
+    }
+
+    /**
+     * Sends one query and returns a copy of the raw response.
+     *
+     * @param name      the domain name, with or without trailing dot
+     * @param type      the query type
+     * @param server    the server to ask
+     * @param timeoutMs the timeout of the query
+     * @return the response message, whatever its RCODE
+     */
+    public @NotNull CompletableFuture<byte[]> query(@NotNull CharSequence name, int type,
+                                                   @NotNull InetSocketAddress server, int timeoutMs) {
+        return query(name, type, server, timeoutMs, AsyncDnsClient::copy);
+    }
+
+    /**
+     * Queries the best-scored resolvers until one answers and evaluates the response in place.
+     *
+     * @param name    the domain name, with or without trailing dot
+     * @param type    the query type
+     * @param handler evaluates the response on the reader thread
+     * @return the value produced by the handler
+     */
+    public <T> @NotNull CompletableFuture<T> query(@NotNull CharSequence name, int type,
+                                                   @NotNull ResponseHandler<T> handler) {
+        return exchange(name, type, handler);
+    }
+
+    /**
+     * Sends one query and evaluates the response in place, without copying it.
+     *
+     * @param name      the domain name, with or without trailing dot
+     * @param type      the query type
+     * @param server    the server to ask
+     * @param timeoutMs the timeout of the query
+     * @param handler   evaluates the response on the reader thread
+     * @return the value produced by the handler; completes exceptionally with a
+     *         {@link TimeoutException} if no response arrives in time
+     */
+    public <T> @NotNull CompletableFuture<T> query(@NotNull CharSequence name, int type,
+                                                   @NotNull InetSocketAddress server, int timeoutMs,
+                                                   @NotNull ResponseHandler<T> handler) {
+        Query<T> query = new Query<>(name, type, server, timeoutMs, handler);
+        ByteBuffer buf = buffers.acquire();
+        try {
+            DnsCodec.encodeQuery(buf, 0, name, type, udpPayloadSize);
+            buf.flip();
+            query.questionHash = DnsCodec.questionHash(buf);
+            if (!register(query)) {
+                query.completeExceptionally(new IOException("Too many DNS queries in flight"));
+                return query;
+            }
+            buf.putShort(0, (short) query.id);
+            send(buf, server);
+        } catch (IOException | RuntimeException e) {
+            fail(query, e);
+        } finally {
+            buffers.release(buf);
+        }
+        return query;
+    }
+
+    /**
+     * Sets the cache consulted by {@link #lookup(String, int)}. Queries to a specific server
+     * always go to the network.
+     *
+     * @param cache the {@link DnsCache}, or {@code null} to disable caching
+     */
+    public void setCache(@Nullable DnsCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return the configured cache, or {@code null} if caching is disabled
+     */
+    public @Nullable DnsCache cache() {
+        return cache;
+    }
+
+    /**
+     * Sets the UDP payload size advertised in the EDNS0 OPT record of every query.
+     *
+     * @param size the payload size in bytes (513-65535), or {@code 0} to send plain queries
+     *             limited to 512-byte responses
+     */
+    public void setUdpPayloadSize(int size) {
+        if (size != 0 && (size <= DnsCodec.CLASSIC_UDP_SIZE || size > MAX_MESSAGE)) {
+            throw new IllegalArgumentException("udpPayloadSize must be 0 or 513-65535");
+        }
+        this.udpPayloadSize = size;
+    }
+
+    /**
+     * @return the advertised UDP payload size, or {@code 0} if EDNS0 is disabled
+     */
+    public int udpPayloadSize() {
+        return udpPayloadSize;
+    }
+
+    /**
+     * Enables or disables retrying truncated responses over TCP (enabled by default).
+     * When disabled, handlers receive truncated responses as they are.
+     *
+     * @param enabled whether to fall back to TCP
+     */
+    public void setTcpFallback(boolean enabled) {
+        this.tcpFallback = enabled;
+    }
+
+    /**
+     * @return the number of queries awaiting a response
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the resolvers used by {@link #lookup(String, int)}, best first
+     */
+    public @NotNull List<InetSocketAddress> resolvers() {
+        return pool.ranked();
+    }
+
+    /**
+     * @return the pool ranking the resolvers
+     */
+    public @NotNull ResolverPool pool() {
+        return pool;
+    }
+
+    /**
+     * Closes the socket and fails all queries in flight.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            selector.close();
+        } catch (IOException ignored) {}
+        reader.interrupt();
+        tcp.values().forEach(DnsTcpConnection::close);
+        tcp.clear();
+        ClosedChannelException closed = new ClosedChannelException();
+        for (int id = 0; id < SLOTS; id++) {
+            Query<?> q = slots.get(id);
+            if (q != null) fail(q, closed);
+        }
+    }
+
+    private <T> CompletableFuture<T> exchange(CharSequence name, int type, ResponseHandler<T> handler) {
+        Exchange<T> exchange = new Exchange<>(name, type, handler, pool.rankedResolvers());
+        exchange.attempt();
+        return exchange;
+    }
+
+    /**
+     * Assigns the query a random transaction ID not used by any other query in flight.
+     */
+    private boolean register(Query<?> query) {
+        if (inFlight.incrementAndGet() > MAX_IN_FLIGHT) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        // at most half the table is in use, so a free slot is usually found within a few probes
+        int id = ThreadLocalRandom.current().nextInt(SLOTS);
+        while (true) {
+            query.id = id;
+            if (slots.get(id) == null && slots.compareAndSet(id, null, query)) {
+                // set after the slot, so a sweep clearing the word concurrently sees the query
+                long bit = 1L << id;
+                occupied.getAndAccumulate(id >>> 6, bit, (w, b) -> w | b);
+                return true;
+            }
+            id = (id + 1) & (SLOTS - 1);
+        }
+    }
+
+    /**
+     * Frees the query's slot; only the caller that succeeds may complete the query.
+     */
+    private boolean release(Query<?> query) {
+        if (!slots.compareAndSet(query.id, query, null)) return false;
+        inFlight.decrementAndGet();
+        return true;
+    }
+
+    private void fail(Query<?> query, Throwable cause) {
+        if (query.id < 0 || release(query)) query.completeExceptionally(cause);
+    }
+
+    private void send(ByteBuffer buf, InetSocketAddress server) throws IOException {
+        // a non-blocking send only fails to go out when the socket buffer is full; let the kernel drain it
+        for (int spins = 0; channel.send(buf, server) == 0; spins++) {
+            if (spins == 1000) throw new IOException("DNS send buffer full");
+            Thread.onSpinWait();
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(MAX_MESSAGE);
+        long nextSweep = System.nanoTime();
+        while (channel.isOpen()) {
+            try {
+                selector.select(SWEEP_INTERVAL_MS);
+                selector.selectedKeys().clear();
+                SocketAddress from;
+                while ((from = channel.receive(buf.clear())) != null) {
+                    dispatch(buf.flip(), from);
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                break; // closed
+            }
+            long now = System.nanoTime();
+            if (now - nextSweep >= 0) {
+                nextSweep = now + SWEEP_INTERVAL_MS * 1_000_000L;
+                if (inFlight.get() > 0) sweep(now);
+            }
+        }
+    }
+
+    private void dispatch(ByteBuffer msg, SocketAddress from) {
+        if (msg.remaining() < DnsCodec.HEADER_LENGTH || !DnsCodec.isResponse(msg)) return;
+        Query<?> query = slots.get(DnsCodec.id(msg));
+        if (query == null || !query.server.equals(from) || DnsCodec.questionHash(msg) != query.questionHash) {
+            return; // late, spoofed or foreign datagram
+        }
+        if (!release(query)) return;
+        if (tcpFallback && DnsCodec.isTruncated(msg)) {
+            // connecting blocks, so leave the reader thread
+            Thread.ofVirtual().start(() -> retryOverTcp(query));
+        } else {
+            query.accept(msg);
+        }
+    }
+
+    /**
+     * Repeats a query whose UDP response was truncated over the server's TCP connection.
+     */
+    private <T> void retryOverTcp(Query<T> query) {
+        queryTcp(query, true).whenComplete((value, e) -> {
+            if (e == null) query.complete(value);
+            else query.completeExceptionally(e);
+        });
+    }
+
+    private <T> CompletableFuture<T> queryTcp(Query<T> query, boolean retry) {
+        DnsTcpConnection conn;
+        try {
+            conn = tcpConnection(query.server, query.timeoutMs);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = conn.query(query.name, query.type, query.timeoutMs, query.handler);
+        if (!retry) return result;
+        // servers close idle or busy connections at will, leaving pipelined queries unanswered (RFC 7766)
+        return result.exceptionallyComposeAsync(
+                e -> conn.isOpen() ? CompletableFuture.failedFuture(e) : queryTcp(query, false),
+                task -> Thread.ofVirtual().start(task));
+    }
+
+    private DnsTcpConnection tcpConnection(InetSocketAddress server, int timeoutMs) throws IOException {
+        try {
+            return tcp.compute(server, (key, conn) -> {
+                if (conn != null && conn.isOpen()) return conn;
+                try {
+                    return DnsTcpConnection.open(key, timeoutMs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Times out the expired queries among the occupied slots. Bits are cleared here only, a
+     * word at a time, and set again for slots still in use; released slots drop out this way.
+     */
+    private void sweep(long now) {
+        for (int w = 0; w < SLOTS / 64; w++) {
+            if (occupied.get(w) == 0) continue;
+            long bits = occupied.getAndSet(w, 0);
+            long keep = 0;
+            while (bits != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                Query<?> q = slots.get(id);
+                if (q == null) continue;
+                if (now - q.deadlineNanos >= 0 && release(q)) {
+                    q.completeExceptionally(new TimeoutException("No DNS response from " + q.server));
+                } else {
+                    keep |= 1L << id;
+                }
+            }
+            if (keep != 0) occupied.getAndAccumulate(w, keep, (x, b) -> x | b);
+        }
+    }
+
+    /**
+     * @return {@code true} if the attempt failed because the server did not answer, as opposed
+     *         to the handler rejecting its answer
+     */
+    private static boolean isNetworkFailure(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+        return e instanceof TimeoutException || e instanceof IOException;
+    }
+
+    private static byte @NotNull [] copy(@NotNull ByteBuffer msg) {
+        byte[] out = new byte[msg.remaining()];
+        msg.get(out);
+        return out;
+    }
+
+    /**
+     * @return the name servers configured for this host, or public resolvers if none can be detected
+     */
+    public static @NotNull List<InetSocketAddress> systemResolvers() {
+        List<InetSocketAddress> out = new ArrayList<>();
+        try {
+            Class<?> rc = Class.forName("sun.net.dns.ResolverConfiguration");
+            Object conf = rc.getMethod("open").invoke(null);
+            @SuppressWarnings("unchecked")
+            List<String> names = (List<String>) rc.getMethod("nameservers").invoke(conf);
+            for (String n : names) {
+                try {
+                    out.add(new InetSocketAddress(n, 53));
+                } catch (Exception ignored) {}
+            }
+        } catch (Throwable ignored) {}
+
+        if (out.isEmpty()) {
+            out.add(new InetSocketAddress("8.8.8.8", 53));
+            out.add(new InetSocketAddress("1.1.1.1", 53));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    /**
+     * Evaluates a response while it is still in the client's receive buffer.
+     * <p>
+     * Runs on the reader thread and must not block or keep a reference to the buffer, which
+     * is reused for the next datagram. The message starts at index 0 and ends at the limit.
+     * </p>
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(@NotNull ByteBuffer msg) throws Exception;
+    }
+
+    /**
+     * A lookup across the pool: attempts go to the resolvers in rank order, the next one starts
+     * when an attempt fails or, as a hedge, when the current leader is slower than usual.
+     * Every attempt's outcome feeds the pool's scores, including those of losing hedges.
+     */
+    private final class Exchange<T> extends CompletableFuture<T> {
+        private final CharSequence name;
+        private final int type;
+        private final ResponseHandler<T> handler;
+        private final ResolverPool.Resolver[] order;
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        Exchange(CharSequence name, int type, ResponseHandler<T> handler, ResolverPool.Resolver[] order) {
+            this.name = name;
+            this.type = type;
+            this.handler = handler;
+            this.order = order;
+        }
+
+        /**
+         * Starts the next attempt, if any resolver is left.
+         */
+        void attempt() {
+            int i = started.getAndIncrement();
+            if (i >= order.length || isDone()) return;
+            InetSocketAddress server = order[i].address;
+            long start = System.nanoTime();
+            CompletableFuture<T> attempt = query(name, type, server, timeoutMs, handler);
+
+            long hedgeMs = i + 1 < order.length ? pool.hedgeDelayMs(server) : -1;
+            if (hedgeMs >= 0 && hedgeMs < timeoutMs && !attempt.isDone()) {
+                CompletableFuture.delayedExecutor(hedgeMs, TimeUnit.MILLISECONDS, Runnable::run).execute(() -> {
+                    // only hedge if nothing else has started a follow-up attempt meanwhile
+                    if (!isDone() && started.get() == i + 1) attempt();
+                });
+            }
+
+            attempt.whenComplete((value, e) -> {
+                if (e == null || !isNetworkFailure(e)) {
+                    pool.onSuccess(server, (System.nanoTime() - start) / 1_000_000);
+                    if (e == null) complete(value);
+                    else completeExceptionally(e);
+                    return;
+                }
+                pool.onFailure(server);
+                if (failed.incrementAndGet() >= order.length) {
+                    completeExceptionally(e);
+                } else if (failed.get() >= Math.min(started.get(), order.length)) {
+                    attempt(); // no attempt left in flight
+                }
+            });
+        }
+    }
+
+    /**
+     * A query awaiting its response; doubles as the future handed to the caller so that a
+     * query costs a single allocation.
+     */
+    private static final class Query<T> extends CompletableFuture<T> {
+        final CharSequence name;
+        final int type;
+        final InetSocketAddress server;
+        final int timeoutMs;
+        final ResponseHandler<T> handler;
+        final long deadlineNanos;
+        long questionHash;
+        int id = -1;
+
+        Query(CharSequence name, int type, InetSocketAddress server, int timeoutMs, ResponseHandler<T> handler) {
+            this.name = name;
+            this.type = type;
+            this.server = server;
+            this.timeoutMs = timeoutMs;
+            this.handler = handler;
+            this.deadlineNanos = System.nanoTime() + timeoutMs * 1_000_000L;
+        }
+
+        void accept(ByteBuffer msg) {
+            try {
+                complete(handler.handle(msg));
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            }
+        }
+    }
+}
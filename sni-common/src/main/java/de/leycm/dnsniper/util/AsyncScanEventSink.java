@@ -0,0 +1,147 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import de.leycm.dnsniper.event.ScanEvent;
+import de.leycm.dnsniper.event.ScanEventLevel;
+import de.leycm.dnsniper.event.ScanEventSink;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * {@link ScanEventSink} that decouples scanner threads from event handling.
+ * <p>
+ * {@link #publish(ScanEvent)} only offers the event to a bounded queue and never blocks;
+ * when the queue is full the event is dropped and counted in {@link #dropped()}.
+ * A single daemon thread drains the queue in batches and hands each batch to the handler,
+ * so e.g. console output takes the {@link PrintStream} lock once per batch instead of
+ * once per port.
+ * </p>
+ */
+public final class AsyncScanEventSink implements ScanEventSink, AutoCloseable {
+
+    private final ScanEventLevel threshold;
+    private final ArrayBlockingQueue<ScanEvent> queue;
+    private final Consumer<List<ScanEvent>> batchHandler;
+    private final int maxBatch;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    /**
+     * @param threshold    the minimum level accepted
+     * @param capacity     the maximum number of queued events
+     * @param maxBatch     the maximum number of events handed to the handler at once
+     * @param batchHandler receives batches on the drain thread; the list is reused after the call
+     */
+    public AsyncScanEventSink(@NotNull ScanEventLevel threshold, int capacity, int maxBatch,
+                              @NotNull Consumer<List<ScanEvent>> batchHandler) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity > 0 required");
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch > 0 required");
+        this.threshold = threshold;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.batchHandler = batchHandler;
+        this.drainer = Thread.ofPlatform().name("scan-events").daemon().start(this::drain);
+    }
+
+    /**
+     * Creates a sink that prints events at or above {@code threshold} to the stream,
+     * one line per event and one write per batch.
+     *
+     * @param threshold the minimum level
+     * @param out       the target stream, e.g. {@link System#out}
+     * @return a new sink
+     */
+    @Contract("_, _ -> new")
+    public static @NotNull AsyncScanEventSink printing(@NotNull ScanEventLevel threshold, @NotNull PrintStream out) {
+        StringBuilder sb = new StringBuilder(8192);
+        return new AsyncScanEventSink(threshold, 65_536, 1024, batch -> {
+            sb.setLength(0);
+            for (ScanEvent event : batch) {
+                event.formatTo(sb);
+                sb.append(System.lineSeparator());
+            }
+            out.print(sb);
+            out.flush();
+        });
+    }
+
+    @Override
+    public boolean isEnabled(@NotNull ScanEventLevel level) {
+        return !closed && level.isAtLeast(threshold);
+    }
+
+    @Override
+    public void publish(ScanEvent event) {
+        if (!queue.offer(event)) dropped.increment();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops accepting events, delivers what is still queued and stops the drain thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drainer.interrupt();
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<ScanEvent> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                ScanEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) return;
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                deliver(batch);
+            } catch (InterruptedException e) {
+                if (!closed) continue;
+                // flush the remainder on close
+                while (queue.drainTo(batch, maxBatch) > 0) deliver(batch);
+                return;
+            }
+        }
+    }
+
+    private void deliver(@NotNull List<ScanEvent> batch) {
+        try {
+            batchHandler.accept(batch);
+        } catch (RuntimeException ignored) {
+            // a failing handler must not kill the drain thread
+        } finally {
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of equally sized direct {@link ByteBuffer}s.
+ * <p>
+ * Direct buffers are handed to the socket without an intermediate copy, but are expensive
+ * to allocate, so they are kept and reused. {@link #acquire()} falls back to a fresh buffer
+ * when the pool is empty, and {@link #release(ByteBuffer)} drops buffers beyond the capacity,
+ * so the pool never blocks. Both are thread-safe and allocation-free in the steady state.
+ * </p>
+ */
+public final class ByteBufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> free;
+
+    /**
+     * @param bufferSize the capacity of every buffer
+     * @param maxPooled  the maximum number of idle buffers kept
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize > 0 required");
+        if (maxPooled <= 0) throw new IllegalArgumentException("maxPooled > 0 required");
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return a cleared buffer of {@link #bufferSize()} bytes
+     */
+    public @NotNull ByteBuffer acquire() {
+        ByteBuffer buf = free.poll();
+        if (buf == null) return ByteBuffer.allocateDirect(bufferSize);
+        return buf.clear();
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     *
+     * @param buf a buffer obtained from {@link #acquire()}
+     */
+    public void release(@NotNull ByteBuffer buf) {
+        if (buf.capacity() == bufferSize && buf.isDirect()) free.offer(buf);
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+}
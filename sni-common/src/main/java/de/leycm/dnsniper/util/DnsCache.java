@@ -0,0 +1,370 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import de.leycm.dnsniper.dns.CompactDnsRecord;
+import de.leycm.dnsniper.dns.DnsRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe in-memory cache of DNS lookup results keyed by name and query type.
+ * <p>
+ * An entry lives for the smallest TTL among its records, clamped to the cache's
+ * {@code [minTtlSeconds, maxTtlSeconds]}, and is dropped on the first access after it
+ * expires. The cache holds at most {@code maxEntries} entries; it is split into independently
+ * locked segments, each evicting its least recently used entry when its share of
+ * {@code maxEntries} is full, so lookups from many threads rarely contend. Small caches use
+ * fewer segments, down to a single one below 64 entries per segment, so that eviction stays
+ * close to least recently used across the whole cache. Names are compared case-insensitively,
+ * with or without trailing dot.
+ * </p>
+ * <p>
+ * Negative answers are cached as well (RFC 2308): NXDOMAIN for the whole name, so it answers
+ * lookups of every type, and NODATA for the one type asked. Their lifetime is the SOA
+ * MINIMUM (bounded by the SOA record's own TTL) from the response's authority section,
+ * capped at {@code maxNegativeTtlSeconds}; responses without an SOA are not cached negatively.
+ * Cached records keep the TTL they were received with.
+ * </p>
+ */
+public final class DnsCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_ENTRIES = 64;
+    private static final int NXDOMAIN = -1; // type of the per-name NXDOMAIN entry
+
+    private static final byte POSITIVE = 0;
+    private static final byte NEGATIVE = 1;
+
+    private final Segment[] segments;
+    private final int maxEntries;
+    private final int minTtlSeconds;
+    private final int maxTtlSeconds;
+    private final int maxNegativeTtlSeconds;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Creates a cache of 10000 entries honouring TTLs of up to one day.
+     */
+    public DnsCache() {
+        this(10_000);
+    }
+
+    /**
+     * @param maxEntries the maximum number of cached (name, type) results
+     */
+    public DnsCache(int maxEntries) {
+        this(maxEntries, 0, 86_400);
+    }
+
+    /**
+     * @param maxEntries    the maximum number of cached (name, type) results
+     * @param minTtlSeconds the shortest time a result is kept, even if its records say less
+     * @param maxTtlSeconds the longest time a result is kept, even if its records say more
+     */
+    public DnsCache(int maxEntries, int minTtlSeconds, int maxTtlSeconds) {
+        this(maxEntries, minTtlSeconds, maxTtlSeconds, 10_800);
+    }
+
+    /**
+     * @param maxEntries            the maximum number of cached (name, type) results
+     * @param minTtlSeconds         the shortest time a result is kept, even if its records say less
+     * @param maxTtlSeconds         the longest time a result is kept, even if its records say more
+     * @param maxNegativeTtlSeconds the longest time a negative answer is kept, 0 to disable negative caching
+     */
+    public DnsCache(int maxEntries, int minTtlSeconds, int maxTtlSeconds, int maxNegativeTtlSeconds) {
+        if (maxNegativeTtlSeconds < 0) throw new IllegalArgumentException("maxNegativeTtlSeconds >= 0 required");
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries > 0 required");
+        if (minTtlSeconds < 0 || minTtlSeconds > maxTtlSeconds) {
+            throw new IllegalArgumentException("0 <= minTtlSeconds <= maxTtlSeconds required");
+        }
+        this.maxEntries = maxEntries;
+        this.minTtlSeconds = minTtlSeconds;
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.maxNegativeTtlSeconds = maxNegativeTtlSeconds;
+        // a power of two so a mask picks the segment; capacities add up to exactly maxEntries
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_SEGMENT_ENTRIES)));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxEntries / count + (i < maxEntries % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * @param name the domain name
+     * @param type the query type
+     * @return the cached records, or {@code null} if nothing unexpired is cached; for a cached
+     *         negative answer, the records of that response (typically just the zone's SOA)
+     */
+    public @Nullable List<DnsRecord> get(@NotNull String name, int type) {
+        Entry entry = find(normalize(name), type);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (entry.kind == NEGATIVE) negativeHits.increment();
+        return entry.records;
+    }
+
+    /**
+     * Checks for a cached negative answer without counting a lookup.
+     *
+     * @param name the domain name
+     * @param type the query type
+     * @return {@code true} if the name is cached as NXDOMAIN or the type as NODATA
+     */
+    public boolean isKnownMissing(@NotNull String name, int type) {
+        Entry entry = find(normalize(name), type);
+        return entry != null && entry.kind == NEGATIVE;
+    }
+
+    /**
+     * @param name the domain name
+     * @return {@code true} if the name is cached as NXDOMAIN
+     */
+    public boolean isNxDomain(@NotNull String name) {
+        Key key = new Key(normalize(name), NXDOMAIN);
+        return segment(key).get(key, System.nanoTime()) != null;
+    }
+
+    /**
+     * Caches a response: records of a NOERROR answer for their TTL, NXDOMAIN and NODATA
+     * answers for their negative TTL. Other RCODEs are not cached.
+     *
+     * @param name     the queried name
+     * @param type     the query type
+     * @param response the response
+     * @param records  the records decoded from the response
+     */
+    public void put(@NotNull String name, int type, @NotNull DnsMessage response, @NotNull List<DnsRecord> records) {
+        int rcode = response.rcode();
+        if (rcode == DnsMessage.RCODE_NXDOMAIN) {
+            putNegative(name, NXDOMAIN, records, response.negativeTtl());
+        } else if (rcode == DnsMessage.RCODE_NOERROR) {
+            if (response.answerCount() == 0) putNegative(name, type, records, response.negativeTtl());
+            else put(name, type, records);
+        }
+    }
+
+    /**
+     * Caches an NXDOMAIN answer, which covers every type of the name.
+     *
+     * @param name       the name that does not exist
+     * @param records    the records of the response, returned on later hits
+     * @param ttlSeconds the negative TTL, capped at {@code maxNegativeTtlSeconds}
+     */
+    public void putNxDomain(@NotNull String name, @NotNull List<DnsRecord> records, long ttlSeconds) {
+        putNegative(name, NXDOMAIN, records, ttlSeconds);
+    }
+
+    /**
+     * Caches a NODATA answer: the name exists but has no records of the type.
+     *
+     * @param name       the queried name
+     * @param type       the type without records
+     * @param records    the records of the response, returned on later hits
+     * @param ttlSeconds the negative TTL, capped at {@code maxNegativeTtlSeconds}
+     */
+    public void putNoData(@NotNull String name, int type, @NotNull List<DnsRecord> records, long ttlSeconds) {
+        putNegative(name, type, records, ttlSeconds);
+    }
+
+    private void putNegative(String name, int type, List<DnsRecord> records, long ttlSeconds) {
+        long ttl = Math.min(ttlSeconds, maxNegativeTtlSeconds);
+        if (ttl <= 0) return;
+        Key key = new Key(normalize(name), type);
+        segment(key).put(key, new Entry(immutable(records), System.nanoTime() + ttl * 1_000_000_000L, NEGATIVE));
+    }
+
+    /**
+     * Keeps compact record views as they are instead of materializing them into a copy.
+     */
+    private static List<DnsRecord> immutable(List<DnsRecord> records) {
+        return records instanceof CompactDnsRecord.RecordList ? records : List.copyOf(records);
+    }
+
+    private @Nullable Entry find(String normalized, int type) {
+        long now = System.nanoTime();
+        Key key = new Key(normalized, type);
+        Entry entry = segment(key).get(key, now);
+        if (entry != null) return entry;
+        Key nx = new Key(normalized, NXDOMAIN);
+        return segment(nx).get(nx, now);
+    }
+
+    /**
+     * Caches a non-empty result for the smallest TTL among its records.
+     * Empty results carry no TTL and are not cached.
+     *
+     * @param name    the domain name
+     * @param type    the query type
+     * @param records the records returned for the lookup
+     */
+    public void put(@NotNull String name, int type, @NotNull List<DnsRecord> records) {
+        if (records.isEmpty()) return;
+        long ttl = Long.MAX_VALUE;
+        if (records instanceof CompactDnsRecord.RecordList view) {
+            // read the TTLs without materializing the records
+            for (CompactDnsRecord r : view.records()) {
+                if (r.ttl() >= 0) ttl = Math.min(ttl, r.ttl());
+            }
+        } else {
+            for (DnsRecord r : records) {
+                if (r.ttl() >= 0) ttl = Math.min(ttl, r.ttl());
+            }
+        }
+        put(name, type, records, ttl == Long.MAX_VALUE ? minTtlSeconds : ttl);
+    }
+
+    /**
+     * Caches a result for the given TTL.
+     *
+     * @param name       the domain name
+     * @param type       the query type
+     * @param records    the records returned for the lookup
+     * @param ttlSeconds the lifetime of the entry, clamped to the cache's bounds
+     */
+    public void put(@NotNull String name, int type, @NotNull List<DnsRecord> records, long ttlSeconds) {
+        long ttl = Math.max(minTtlSeconds, Math.min(ttlSeconds, maxTtlSeconds));
+        if (ttl == 0) return;
+        Key key = new Key(normalize(name), type);
+        segment(key).put(key, new Entry(immutable(records), System.nanoTime() + ttl * 1_000_000_000L, POSITIVE));
+    }
+
+    /**
+     * Removes the cached result of one lookup, including a cached NXDOMAIN of the name.
+     */
+    public void invalidate(@NotNull String name, int type) {
+        String normalized = normalize(name);
+        Key key = new Key(normalized, type);
+        segment(key).remove(key);
+        Key nx = new Key(normalized, NXDOMAIN);
+        segment(nx).remove(nx);
+    }
+
+    /**
+     * Removes all entries. Statistics are kept.
+     */
+    public void clear() {
+        for (Segment s : segments) s.clear();
+    }
+
+    /**
+     * @return the number of entries, including expired ones not yet dropped
+     */
+    public int size() {
+        int n = 0;
+        for (Segment s : segments) n += s.size();
+        return n;
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return a snapshot of the hit and miss counters
+     */
+    public @NotNull Stats stats() {
+        return new Stats(hits.sum(), negativeHits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size());
+    }
+
+    private Segment segment(Key key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private static @NotNull String normalize(@NotNull String name) {
+        int end = name.endsWith(".") ? name.length() - 1 : name.length();
+        return name.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Counters of a {@link DnsCache}.
+     *
+     * @param hits         lookups answered from the cache
+     * @param negativeHits the part of {@code hits} answered by a cached NXDOMAIN or NODATA
+     * @param misses       lookups not found or expired
+     * @param evictions    entries dropped to make room
+     * @param expirations  entries dropped because their TTL ran out
+     * @param size         the current number of entries
+     */
+    public record Stats(long hits, long negativeHits, long misses, long evictions, long expirations, int size) {
+
+        /**
+         * @return the fraction of lookups answered from the cache, or 0 before the first lookup
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Key(String name, int type) { }
+
+    private record Entry(List<DnsRecord> records, long expiresAtNanos, byte kind) { }
+
+    /**
+     * Access-ordered map guarded by its own lock.
+     */
+    private final class Segment {
+        private final LinkedHashMap<Key, Entry> map;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        synchronized Entry get(Key key, long now) {
+            Entry entry = map.get(key);
+            if (entry == null) return null;
+            if (now - entry.expiresAtNanos >= 0) {
+                map.remove(key);
+                expirations.increment();
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            map.put(key, entry);
+        }
+
+        synchronized void remove(Key key) {
+            map.remove(key);
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
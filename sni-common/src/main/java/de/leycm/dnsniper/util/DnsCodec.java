@@ -0,0 +1,294 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import de.leycm.dnsniper.dns.CompactDnsRecord;
+import de.leycm.dnsniper.dns.DnsRecord;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wire format of DNS queries and responses (RFC 1035), shared by the DNS clients.
+ * NOTE: Not a full DNS implementation. Handles most typical answers and common RDATA types.
+ */
+@SuppressWarnings("SpellCheckingInspection")
+public final class DnsCodec {
+
+    public static final int TYPE_A = 1;
+    public static final int TYPE_NS = 2;
+    public static final int TYPE_CNAME = 5;
+    public static final int TYPE_SOA = 6;
+    public static final int TYPE_MX = 15;
+    public static final int TYPE_TXT = 16;
+    public static final int TYPE_AAAA = 28;
+    public static final int TYPE_OPT = 41;
+
+    /**
+     * Length of the fixed message header.
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private DnsCodec() {
+    }
+
+    /**
+     * Largest size of an encoded name, including length octets and the root label.
+     */
+    public static final int MAX_NAME_LENGTH = 255;
+
+    /**
+     * Size of the EDNS0 OPT record appended by {@link #encodeQuery(ByteBuffer, int, CharSequence, int, int)}.
+     */
+    public static final int OPT_LENGTH = 11;
+
+    /**
+     * Largest size of an encoded query produced by this codec.
+     */
+    public static final int MAX_QUERY_LENGTH = HEADER_LENGTH + MAX_NAME_LENGTH + 4 + OPT_LENGTH;
+
+    /**
+     * Largest UDP response a plain query may receive (RFC 1035).
+     */
+    public static final int CLASSIC_UDP_SIZE = 512;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Encodes a recursive query for one question of class IN.
+     *
+     * @param id    the transaction ID
+     * @param qname the fully qualified name, with or without trailing dot
+     * @param type  the query type
+     * @return the encoded message
+     * @throws IllegalArgumentException if the name is not a valid domain name
+     */
+    public static byte @NotNull [] encodeQuery(int id, @NotNull CharSequence qname, int type) {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_QUERY_LENGTH);
+        encodeQuery(buf, id, qname, type);
+        byte[] out = new byte[buf.position()];
+        buf.flip().get(out);
+        return out;
+    }
+
+    /**
+     * Encodes a recursive query for one question of class IN into {@code dst}, starting at
+     * its position, without allocating. Labels are written straight from the characters of
+     * the name; empty labels are skipped.
+     *
+     * @param dst   the buffer to write to, with at least {@link #MAX_QUERY_LENGTH} bytes remaining
+     * @param id    the transaction ID
+     * @param qname the fully qualified name, with or without trailing dot
+     * @param type  the query type
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the name is not a valid domain name
+     */
+    public static int encodeQuery(@NotNull ByteBuffer dst, int id, @NotNull CharSequence qname, int type) {
+        return encodeQuery(dst, id, qname, type, 0);
+    }
+
+    /**
+     * Encodes a query like {@link #encodeQuery(ByteBuffer, int, CharSequence, int)} and, if
+     * {@code udpPayloadSize} exceeds 512, appends an EDNS0 OPT record (RFC 6891) advertising
+     * that the client accepts UDP responses of up to that size.
+     *
+     * @param dst            the buffer to write to, with at least {@link #MAX_QUERY_LENGTH} bytes remaining
+     * @param id             the transaction ID
+     * @param qname          the fully qualified name, with or without trailing dot
+     * @param type           the query type
+     * @param udpPayloadSize the advertised UDP payload size, or {@code 0} to send no OPT record
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the name is not a valid domain name
+     */
+    public static int encodeQuery(@NotNull ByteBuffer dst, int id, @NotNull CharSequence qname, int type,
+                                  int udpPayloadSize) {
+        boolean edns = udpPayloadSize > CLASSIC_UDP_SIZE;
+        int start = dst.position();
+        dst.putShort((short) id);
+        dst.putShort((short) 0x0100); // RD
+        dst.putShort((short) 1);      // QDCOUNT
+        dst.putShort((short) 0);      // ANCOUNT
+        dst.putShort((short) 0);      // NSCOUNT
+        dst.putShort((short) (edns ? 1 : 0)); // ARCOUNT
+
+        int nameStart = dst.position();
+        int len = qname.length();
+        int labelStart = 0;
+        for (int i = 0; i <= len; i++) {
+            if (i < len && qname.charAt(i) != '.') continue;
+            if (i > labelStart) {
+                // check before writing, so an oversized name never overruns dst
+                int length = encodedLength(qname, labelStart, i);
+                if (length > 63) {
+                    dst.position(start);
+                    throw new IllegalArgumentException("Label too long in " + qname);
+                }
+                if (dst.position() - nameStart + 1 + length + 1 > MAX_NAME_LENGTH) {
+                    dst.position(start);
+                    throw new IllegalArgumentException("Name too long: " + qname);
+                }
+                putLabel(dst, qname, labelStart, i, length);
+            }
+            labelStart = i + 1;
+        }
+        dst.put((byte) 0);
+
+        dst.putShort((short) type);
+        dst.putShort((short) 1); // IN
+
+        if (edns) {
+            dst.put((byte) 0);                                       // root owner
+            dst.putShort((short) TYPE_OPT);
+            dst.putShort((short) Math.min(udpPayloadSize, 0xFFFF));  // CLASS = payload size
+            dst.putInt(0);                                           // extended RCODE, version 0, no flags
+            dst.putShort((short) 0);                                 // no options
+        }
+        return dst.position() - start;
+    }
+
+    private static int encodedLength(CharSequence name, int from, int to) {
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = name.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return length;
+    }
+
+    private static void putLabel(ByteBuffer dst, CharSequence name, int from, int to, int length) {
+        dst.put((byte) length);
+        for (int i = from; i < to; i++) {
+            char c = name.charAt(i);
+            if (c < 0x80) {
+                dst.put((byte) c);
+            } else if (c < 0x800) {
+                dst.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else {
+                // surrogates are written as-is; internationalized names should be punycode anyway
+                dst.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * @return the transaction ID of the message
+     */
+    @Contract(pure = true)
+    public static int id(byte @NotNull [] msg) {
+        return ((msg[0] & 0xFF) << 8) | (msg[1] & 0xFF);
+    }
+
+    /**
+     * @param msg a message starting at index 0
+     * @return the transaction ID of the message
+     */
+    public static int id(@NotNull ByteBuffer msg) {
+        return Short.toUnsignedInt(msg.getShort(0));
+    }
+
+    /**
+     * @param msg a message starting at index 0
+     * @return {@code true} if the QR bit is set
+     */
+    public static boolean isResponse(@NotNull ByteBuffer msg) {
+        return (msg.get(2) & 0x80) != 0;
+    }
+
+    /**
+     * @param msg a message starting at index 0
+     * @return {@code true} if the TC bit is set, i.e. the response did not fit the UDP payload
+     */
+    public static boolean isTruncated(@NotNull ByteBuffer msg) {
+        return (msg.get(2) & 0x02) != 0;
+    }
+
+    /**
+     * @param msg a message starting at index 0
+     * @return the RCODE of the message, e.g. 3 for NXDOMAIN
+     */
+    public static int rcode(@NotNull ByteBuffer msg) {
+        return msg.get(3) & 0x0F;
+    }
+
+    /**
+     * @param msg a message starting at index 0
+     * @return the number of records in the answer section
+     */
+    public static int answerCount(@NotNull ByteBuffer msg) {
+        return Short.toUnsignedInt(msg.getShort(6));
+    }
+
+    /**
+     * Hashes the first question of a message (name, type and class) with FNV-1a, folding
+     * the name to lower case so that a response whose resolver changed the case of the
+     * echoed question still matches. Used to match responses to queries without keeping
+     * the query bytes around.
+     *
+     * @param msg a message starting at index 0, ending at its limit
+     * @return the hash, or {@code 0} if the message has no well-formed question
+     */
+    public static long questionHash(@NotNull ByteBuffer msg) {
+        int limit = msg.limit();
+        if (limit < HEADER_LENGTH || msg.getShort(4) == 0) return 0;
+        long h = FNV_OFFSET;
+        int p = HEADER_LENGTH;
+        while (true) {
+            if (p >= limit) return 0;
+            int len = msg.get(p) & 0xFF;
+            if (len > 63 || p + 1 + len > limit) return 0; // questions are never compressed
+            h = (h ^ len) * FNV_PRIME;
+            p++;
+            if (len == 0) break;
+            for (int end = p + len; p < end; p++) {
+                byte b = msg.get(p);
+                h = (h ^ (toLower(b) & 0xFF)) * FNV_PRIME;
+            }
+        }
+        if (p + 4 > limit) return 0;
+        for (int end = p + 4; p < end; p++) h = (h ^ (msg.get(p) & 0xFF)) * FNV_PRIME;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Decodes the records of a response.
+     *
+     * @param resp     the response
+     * @param wantType the query type; records of this type and of all common types are returned
+     * @return the decoded records of all sections, or an empty list if the message is malformed
+     * @see DnsMessage#toRecords(int)
+     */
+    public static @NotNull List<DnsRecord> parseResponse(byte @NotNull [] resp, int wantType) {
+        if (resp.length < HEADER_LENGTH) return Collections.emptyList();
+        return DnsMessage.wrap(resp).toRecords(wantType);
+    }
+
+    /**
+     * @param t a numeric record type
+     * @return the mnemonic of the type, or {@code TYPE<n>} for uncommon types
+     */
+    @Contract(pure = true)
+    public static @NotNull String typeString(int t) {
+        return CompactDnsRecord.typeName(t);
+    }
+
+    private static byte toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+    }
+
+    static boolean isInterestType(int t) {
+        return t == TYPE_A || t == TYPE_AAAA || t == TYPE_CNAME || t == TYPE_MX ||
+                t == TYPE_NS || t == TYPE_TXT || t == TYPE_SOA;
+    }
+}
@@ -0,0 +1,606 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import de.leycm.dnsniper.dns.CompactDnsRecord;
+import de.leycm.dnsniper.dns.DnsRecord;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only view of a DNS message in a buffer.
+ * <p>
+ * Nothing is decoded up front: header fields are read on access, section offsets are found
+ * by skipping names without decoding them, and records are visited with a {@link Records}
+ * cursor whose owner name and RDATA are only turned into Strings when asked for. Checks
+ * such as "does this name exist" or "what is the first A record" therefore stop as soon as
+ * the answer is known and never build a String.
+ * </p>
+ * <p>
+ * The message starts at index 0 of the buffer and ends at its limit. The view must not be
+ * used after the buffer is reused. Malformed messages surface as
+ * {@link IllegalArgumentException} or {@link IndexOutOfBoundsException} on access.
+ * </p>
+ */
+public final class DnsMessage {
+
+    public static final int RCODE_NOERROR = 0;
+    public static final int RCODE_SERVFAIL = 2;
+    public static final int RCODE_NXDOMAIN = 3;
+
+    private static final int MAX_POINTER_HOPS = 64;
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int answerOffset = -1;
+    private int authorityOffset = -1;
+    private int additionalOffset = -1;
+
+    private DnsMessage(ByteBuffer buf) {
+        this.buf = buf;
+        this.limit = buf.limit();
+    }
+
+    /**
+     * @param msg a buffer holding a message from index 0 to its limit
+     * @return a view of the message
+     * @throws IllegalArgumentException if the buffer is shorter than a header
+     */
+    public static @NotNull DnsMessage wrap(@NotNull ByteBuffer msg) {
+        if (msg.limit() < DnsCodec.HEADER_LENGTH) throw new IllegalArgumentException("Truncated DNS header");
+        return new DnsMessage(msg);
+    }
+
+    /**
+     * @param msg a complete message
+     * @return a view of the message
+     */
+    public static @NotNull DnsMessage wrap(byte @NotNull [] msg) {
+        return wrap(ByteBuffer.wrap(msg));
+    }
+
+    public int id() {
+        return Short.toUnsignedInt(buf.getShort(0));
+    }
+
+    public boolean isResponse() {
+        return (buf.get(2) & 0x80) != 0;
+    }
+
+    public boolean isAuthoritative() {
+        return (buf.get(2) & 0x04) != 0;
+    }
+
+    public boolean isTruncated() {
+        return (buf.get(2) & 0x02) != 0;
+    }
+
+    public int rcode() {
+        return buf.get(3) & 0x0F;
+    }
+
+    public int questionCount() {
+        return Short.toUnsignedInt(buf.getShort(4));
+    }
+
+    public int answerCount() {
+        return Short.toUnsignedInt(buf.getShort(6));
+    }
+
+    public int authorityCount() {
+        return Short.toUnsignedInt(buf.getShort(8));
+    }
+
+    public int additionalCount() {
+        return Short.toUnsignedInt(buf.getShort(10));
+    }
+
+    /**
+     * @return {@code true} if the response is NOERROR with at least one answer; reads the header only
+     */
+    public boolean hasAnswers() {
+        return rcode() == RCODE_NOERROR && answerCount() > 0;
+    }
+
+    /**
+     * @return a cursor over the answer section
+     */
+    public @NotNull Records answers() {
+        return new Records(answerOffset(), answerCount());
+    }
+
+    /**
+     * @return a cursor over the authority section
+     */
+    public @NotNull Records authorities() {
+        return new Records(authorityOffset(), authorityCount());
+    }
+
+    /**
+     * @return a cursor over the additional section
+     */
+    public @NotNull Records additionals() {
+        return new Records(additionalOffset(), additionalCount());
+    }
+
+    /**
+     * @return a cursor over the answer, authority and additional sections in order
+     */
+    public @NotNull Records allRecords() {
+        return new Records(answerOffset(), answerCount() + authorityCount() + additionalCount());
+    }
+
+    /**
+     * Finds the first answer of a type, skipping all others without decoding them.
+     *
+     * @param type the record type, e.g. {@link DnsCodec#TYPE_A}
+     * @return {@code true} if the answer section holds a record of the type
+     */
+    public boolean hasAnswer(int type) {
+        return answers().next(type);
+    }
+
+    /**
+     * @return the address of the first A or AAAA answer, or {@code null} if there is none
+     */
+    public @Nullable InetAddress firstAddress() {
+        Records r = answers();
+        while (r.next()) {
+            if (r.type() == DnsCodec.TYPE_A || r.type() == DnsCodec.TYPE_AAAA) {
+                InetAddress address = r.address();
+                if (address != null) return address;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines how long a negative answer may be cached (RFC 2308 section 5): the smaller of
+     * the TTL and the MINIMUM field of the SOA record in the authority section.
+     *
+     * @return the negative TTL in seconds, or {@code -1} if the authority section holds no SOA
+     */
+    public long negativeTtl() {
+        try {
+            Records r = authorities();
+            return r.next(DnsCodec.TYPE_SOA) ? Math.min(r.ttl(), r.soaMinimum()) : -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Decodes the records of all sections, keeping those of {@code wantType} and of all
+     * common types.
+     *
+     * @param wantType the query type
+     * @return a read-only {@link DnsRecord} view of {@link #toCompactRecords(int)}
+     */
+    public @NotNull List<DnsRecord> toRecords(int wantType) {
+        return CompactDnsRecord.asDnsRecords(toCompactRecords(wantType));
+    }
+
+    /**
+     * Decodes the records of all sections, keeping those of {@code wantType} and of all
+     * common types, in compact form.
+     *
+     * @param wantType the query type
+     * @return the decoded records, or an empty list if the message is malformed
+     */
+    public @NotNull List<CompactDnsRecord> toCompactRecords(int wantType) {
+        try {
+            List<CompactDnsRecord> out = new ArrayList<>(answerCount());
+            Records r = allRecords();
+            while (r.next()) {
+                int type = r.type();
+                if (type != wantType && !DnsCodec.isInterestType(type)) continue;
+                CompactDnsRecord record = r.toCompactRecord();
+                if (record != null) out.add(record);
+            }
+            return out;
+        } catch (RuntimeException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private int answerOffset() {
+        if (answerOffset < 0) {
+            int off = DnsCodec.HEADER_LENGTH;
+            for (int i = questionCount(); i > 0; i--) off = skipName(off) + 4;
+            answerOffset = off;
+        }
+        return answerOffset;
+    }
+
+    private int authorityOffset() {
+        if (authorityOffset < 0) authorityOffset = skipRecords(answerOffset(), answerCount());
+        return authorityOffset;
+    }
+
+    private int additionalOffset() {
+        if (additionalOffset < 0) additionalOffset = skipRecords(authorityOffset(), authorityCount());
+        return additionalOffset;
+    }
+
+    private int skipRecords(int off, int count) {
+        for (int i = 0; i < count; i++) {
+            off = skipName(off);
+            off += 10 + Short.toUnsignedInt(buf.getShort(off + 8));
+        }
+        if (off > limit) throw new IndexOutOfBoundsException("Record exceeds message");
+        return off;
+    }
+
+    /**
+     * @return the offset just past the name at {@code off}, without following pointers
+     */
+    private int skipName(int off) {
+        while (true) {
+            int len = buf.get(off) & 0xFF;
+            if (len == 0) return off + 1;
+            if ((len & 0xC0) == 0xC0) return off + 2;
+            if ((len & 0xC0) != 0) throw new IllegalArgumentException("Unsupported label type");
+            off += 1 + len;
+        }
+    }
+
+    /**
+     * Decodes the possibly compressed name at {@code off}, following pointers iteratively.
+     *
+     * @return the name without trailing dot, or {@code "."} for the root
+     */
+    @NotNull String readName(int off) {
+        StringBuilder sb = new StringBuilder(32);
+        appendName(sb, off);
+        return sb.isEmpty() ? "." : sb.toString();
+    }
+
+    private void appendName(StringBuilder sb, int off) {
+        int hops = 0;
+        int length = 0;
+        while (true) {
+            int len = buf.get(off) & 0xFF;
+            if (len == 0) return;
+            if ((len & 0xC0) == 0xC0) {
+                if (++hops > MAX_POINTER_HOPS) throw new IllegalArgumentException("Compression loop");
+                off = ((len & 0x3F) << 8) | (buf.get(off + 1) & 0xFF);
+                continue;
+            }
+            if ((len & 0xC0) != 0) throw new IllegalArgumentException("Unsupported label type");
+            length += len + 1;
+            if (length > DnsCodec.MAX_NAME_LENGTH) throw new IllegalArgumentException("Name too long");
+            if (!sb.isEmpty()) sb.append('.');
+            for (int i = off + 1, end = off + 1 + len; i < end; i++) sb.append((char) (buf.get(i) & 0xFF));
+            off += 1 + len;
+        }
+    }
+
+    /**
+     * Copies the name at {@code off} into {@code dst} in uncompressed wire format.
+     *
+     * @return the position in {@code dst} just past the copied name
+     */
+    private int expandName(int off, byte[] dst, int pos) {
+        int hops = 0;
+        int start = pos;
+        while (true) {
+            int len = buf.get(off) & 0xFF;
+            if ((len & 0xC0) == 0xC0) {
+                if (++hops > MAX_POINTER_HOPS) throw new IllegalArgumentException("Compression loop");
+                off = ((len & 0x3F) << 8) | (buf.get(off + 1) & 0xFF);
+                continue;
+            }
+            if ((len & 0xC0) != 0) throw new IllegalArgumentException("Unsupported label type");
+            if (pos - start + len + 1 > DnsCodec.MAX_NAME_LENGTH) throw new IllegalArgumentException("Name too long");
+            buf.get(off, dst, pos, len + 1);
+            pos += len + 1;
+            if (len == 0) return pos;
+            off += 1 + len;
+        }
+    }
+
+    /**
+     * Compares the wire name at {@code off} with {@code name}, ignoring case and a trailing dot.
+     */
+    boolean nameEquals(int off, @NotNull CharSequence name) {
+        int n = name.length();
+        if (n > 0 && name.charAt(n - 1) == '.') n--;
+        int i = 0;
+        int hops = 0;
+        boolean first = true;
+        while (true) {
+            int len = buf.get(off) & 0xFF;
+            if (len == 0) return i == n;
+            if ((len & 0xC0) == 0xC0) {
+                if (++hops > MAX_POINTER_HOPS) return false;
+                off = ((len & 0x3F) << 8) | (buf.get(off + 1) & 0xFF);
+                continue;
+            }
+            if ((len & 0xC0) != 0) return false;
+            if (!first) {
+                if (i == n || name.charAt(i) != '.') return false;
+                i++;
+            }
+            first = false;
+            if (i + len > n) return false;
+            for (int p = off + 1, end = off + 1 + len; p < end; p++, i++) {
+                int a = buf.get(p) & 0xFF;
+                int b = name.charAt(i);
+                if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) return false;
+            }
+            off += 1 + len;
+        }
+    }
+
+    /**
+     * Cursor over the records of one or more consecutive sections.
+     * <p>
+     * {@link #next()} only reads the fixed fields of the next record; everything else is
+     * decoded on demand from the current record.
+     * </p>
+     */
+    public final class Records {
+        private int offset;
+        private int remaining;
+        private int nameOffset;
+        private int rdataOffset;
+        private int rdataLength;
+
+        private Records(int offset, int count) {
+            this.offset = offset;
+            this.remaining = count;
+        }
+
+        /**
+         * Advances to the next record.
+         *
+         * @return {@code false} once all records are visited
+         */
+        public boolean next() {
+            if (remaining == 0) return false;
+            remaining--;
+            nameOffset = offset;
+            int fixed = skipName(offset);
+            rdataLength = Short.toUnsignedInt(buf.getShort(fixed + 8));
+            rdataOffset = fixed + 10;
+            offset = rdataOffset + rdataLength;
+            if (offset > limit) throw new IndexOutOfBoundsException("Record exceeds message");
+            return true;
+        }
+
+        /**
+         * Advances to the next record of a type.
+         *
+         * @param type the record type
+         * @return {@code false} if no further record has the type
+         */
+        public boolean next(int type) {
+            while (next()) {
+                if (type() == type) return true;
+            }
+            return false;
+        }
+
+        public int type() {
+            return Short.toUnsignedInt(buf.getShort(rdataOffset - 10));
+        }
+
+        public int recordClass() {
+            return Short.toUnsignedInt(buf.getShort(rdataOffset - 8));
+        }
+
+        public long ttl() {
+            return Integer.toUnsignedLong(buf.getInt(rdataOffset - 6));
+        }
+
+        /**
+         * @return the offset of the RDATA within the message
+         */
+        public int rdataOffset() {
+            return rdataOffset;
+        }
+
+        public int rdataLength() {
+            return rdataLength;
+        }
+
+        /**
+         * @return the owner name, decoded on each call
+         */
+        public @NotNull String name() {
+            return readName(nameOffset);
+        }
+
+        /**
+         * @param name a domain name, with or without trailing dot
+         * @return {@code true} if the owner name equals {@code name}, ignoring case
+         */
+        public boolean nameIs(@NotNull CharSequence name) {
+            return nameEquals(nameOffset, name);
+        }
+
+        /**
+         * @return the IPv4 address of an A record as an {@code int}
+         * @throws IllegalStateException if the record is not a well-formed A record
+         */
+        public int ipv4() {
+            if (type() != DnsCodec.TYPE_A || rdataLength != 4) throw new IllegalStateException("Not an A record");
+            return buf.getInt(rdataOffset);
+        }
+
+        /**
+         * @return the address of an A or AAAA record, or {@code null} for other records
+         */
+        public @Nullable InetAddress address() {
+            int type = type();
+            if (!(type == DnsCodec.TYPE_A && rdataLength == 4) && !(type == DnsCodec.TYPE_AAAA && rdataLength == 16)) {
+                return null;
+            }
+            byte[] raw = new byte[rdataLength];
+            buf.get(rdataOffset, raw);
+            try {
+                return InetAddress.getByAddress(raw);
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return the domain name held by an NS, CNAME, PTR or MX record's RDATA
+         */
+        public @NotNull String targetName() {
+            return readName(type() == DnsCodec.TYPE_MX ? rdataOffset + 2 : rdataOffset);
+        }
+
+        /**
+         * @return the MINIMUM field of an SOA record, the negative caching TTL (RFC 2308)
+         * @throws IllegalStateException if the record is not an SOA record
+         */
+        public long soaMinimum() {
+            if (type() != DnsCodec.TYPE_SOA) throw new IllegalStateException("Not an SOA record");
+            return Integer.toUnsignedLong(buf.getInt(rdataOffset + rdataLength - 4));
+        }
+
+        /**
+         * Formats the RDATA of the common record types.
+         *
+         * @return the RDATA as text, or {@code null} for unsupported types or malformed data
+         */
+        public @Nullable String data() {
+            int type = type();
+            int pos = rdataOffset;
+            int len = rdataLength;
+            try {
+                if (type == DnsCodec.TYPE_A && len == 4) {
+                    return (buf.get(pos) & 0xFF) + "." + (buf.get(pos + 1) & 0xFF) + "."
+                            + (buf.get(pos + 2) & 0xFF) + "." + (buf.get(pos + 3) & 0xFF);
+                }
+                if (type == DnsCodec.TYPE_AAAA && len == 16) {
+                    StringBuilder sb = new StringBuilder(39);
+                    for (int i = 0; i < 8; i++) {
+                        if (i > 0) sb.append(':');
+                        sb.append(Integer.toHexString(Short.toUnsignedInt(buf.getShort(pos + 2 * i))));
+                    }
+                    return sb.toString();
+                }
+                if (type == DnsCodec.TYPE_NS || type == DnsCodec.TYPE_CNAME) {
+                    return readName(pos);
+                }
+                if (type == DnsCodec.TYPE_MX) {
+                    int pref = Short.toUnsignedInt(buf.getShort(pos));
+                    return readName(pos + 2) + " preference=" + pref;
+                }
+                if (type == DnsCodec.TYPE_TXT) {
+                    StringBuilder sb = new StringBuilder(len);
+                    int off = pos;
+                    int end = pos + len;
+                    while (off < end) {
+                        int l = buf.get(off++) & 0xFF;
+                        if (l == 0) continue;
+                        byte[] text = new byte[Math.min(l, end - off)];
+                        buf.get(off, text);
+                        sb.append(new String(text, StandardCharsets.UTF_8));
+                        off += l;
+                        if (off < end) sb.append(' ');
+                    }
+                    return sb.toString();
+                }
+                if (type == DnsCodec.TYPE_SOA) {
+                    int off = pos;
+                    String mname = readName(off);
+                    off = skipName(off);
+                    String rname = readName(off);
+                    off = skipName(off);
+                    return "mname=" + mname + " rname=" + rname
+                            + " serial=" + Integer.toUnsignedLong(buf.getInt(off))
+                            + " refresh=" + Integer.toUnsignedLong(buf.getInt(off + 4))
+                            + " retry=" + Integer.toUnsignedLong(buf.getInt(off + 8))
+                            + " expire=" + Integer.toUnsignedLong(buf.getInt(off + 12))
+                            + " minimum=" + Integer.toUnsignedLong(buf.getInt(off + 16));
+                }
+            } catch (RuntimeException e) {
+                return null;
+            }
+            return null;
+        }
+
+        /**
+         * Copies the current record into a {@link CompactDnsRecord}, expanding compressed names
+         * in its RDATA.
+         *
+         * @return the record, or {@code null} for unsupported types or malformed data, exactly
+         *         when {@link #data()} returns {@code null}
+         */
+        public @Nullable CompactDnsRecord toCompactRecord() {
+            int type = type();
+            int pos = rdataOffset;
+            int len = rdataLength;
+            byte[] rdata;
+            try {
+                switch (type) {
+                    case DnsCodec.TYPE_A, DnsCodec.TYPE_AAAA -> {
+                        if (len != (type == DnsCodec.TYPE_A ? 4 : 16)) return null;
+                        rdata = new byte[len];
+                        buf.get(pos, rdata);
+                    }
+                    case DnsCodec.TYPE_TXT -> {
+                        rdata = new byte[len];
+                        buf.get(pos, rdata);
+                    }
+                    case DnsCodec.TYPE_NS, DnsCodec.TYPE_CNAME -> {
+                        byte[] scratch = new byte[DnsCodec.MAX_NAME_LENGTH];
+                        rdata = Arrays.copyOf(scratch, expandName(pos, scratch, 0));
+                    }
+                    case DnsCodec.TYPE_MX -> {
+                        byte[] scratch = new byte[2 + DnsCodec.MAX_NAME_LENGTH];
+                        scratch[0] = buf.get(pos);
+                        scratch[1] = buf.get(pos + 1);
+                        rdata = Arrays.copyOf(scratch, expandName(pos + 2, scratch, 2));
+                    }
+                    case DnsCodec.TYPE_SOA -> {
+                        byte[] scratch = new byte[2 * DnsCodec.MAX_NAME_LENGTH + 20];
+                        int off = pos;
+                        int n = expandName(off, scratch, 0);
+                        off = skipName(off);
+                        n = expandName(off, scratch, n);
+                        off = skipName(off);
+                        buf.get(off, scratch, n, 20);
+                        rdata = Arrays.copyOf(scratch, n + 20);
+                    }
+                    default -> {
+                        return null;
+                    }
+                }
+            } catch (RuntimeException e) {
+                return null;
+            }
+            return CompactDnsRecord.of(name(), type, ttl(), rdata);
+        }
+
+        /**
+         * @return the current record as a {@link DnsRecord}, or {@code null} if its RDATA
+         *         cannot be formatted
+         */
+        public @Nullable DnsRecord toDnsRecord() {
+            String data = data();
+            return data == null ? null : new DnsRecord(name(), DnsCodec.typeString(type()), ttl(), data);
+        }
+    }
+}
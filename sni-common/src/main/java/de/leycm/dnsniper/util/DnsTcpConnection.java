@@ -0,0 +1,177 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One persistent DNS-over-TCP connection to a server (RFC 7766).
+ * <p>
+ * Queries are pipelined: any number may be written before the first response arrives, and
+ * responses are matched to queries by transaction ID and question hash in whatever order the
+ * server sends them. A virtual reader thread receives the length-prefixed responses. When
+ * the server closes the connection, pending queries fail and {@link #isOpen()} turns false,
+ * so the owner can replace the connection.
+ * </p>
+ */
+final class DnsTcpConnection implements AutoCloseable {
+
+    private final InetSocketAddress server;
+    private final SocketChannel channel;
+    private final ConcurrentHashMap<Integer, Pending<?>> pending = new ConcurrentHashMap<>();
+    private final ByteBuffer out = ByteBuffer.allocate(2 + DnsCodec.MAX_QUERY_LENGTH);
+    // not a monitor: writes block on slow peers and must not pin the virtual thread's carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile boolean open = true;
+
+    private DnsTcpConnection(InetSocketAddress server, SocketChannel channel) {
+        this.server = server;
+        this.channel = channel;
+        Thread.ofVirtual().name("dns-tcp-" + server).start(this::receiveLoop);
+    }
+
+    /**
+     * Connects to a server.
+     *
+     * @param server    the server address
+     * @param timeoutMs the connect timeout
+     * @return the open connection
+     * @throws IOException if the connection cannot be established
+     */
+    static @NotNull DnsTcpConnection open(@NotNull InetSocketAddress server, int timeoutMs) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.socket().connect(server, timeoutMs);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new DnsTcpConnection(server, channel);
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Sends a query over this connection.
+     *
+     * @param name      the domain name
+     * @param type      the query type
+     * @param timeoutMs the time to wait for the response
+     * @param handler   evaluates the response on the reader thread
+     * @return the value produced by the handler
+     */
+    <T> @NotNull CompletableFuture<T> query(@NotNull CharSequence name, int type, int timeoutMs,
+                                            AsyncDnsClient.@NotNull ResponseHandler<T> handler) {
+        Pending<T> query = new Pending<>(handler);
+        try {
+            writeLock.lock();
+            try {
+                out.clear().position(2);
+                DnsCodec.encodeQuery(out, 0, name, type);
+                out.putShort(0, (short) (out.position() - 2));
+                out.flip();
+                query.questionHash = DnsCodec.questionHash(out.slice(2, out.limit() - 2));
+                int id = ThreadLocalRandom.current().nextInt(1 << 16);
+                while (pending.putIfAbsent(id, query) != null) id = (id + 1) & 0xFFFF;
+                query.id = id;
+                out.putShort(2, (short) id);
+                while (out.hasRemaining()) channel.write(out);
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException e) {
+            // the server dropped the connection; the owner sees isOpen() == false and reconnects
+            close();
+            query.completeExceptionally(e);
+            return query;
+        } catch (RuntimeException e) {
+            if (query.id >= 0) pending.remove(query.id, query);
+            query.completeExceptionally(e);
+            return query;
+        }
+        query.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((r, e) -> pending.remove(query.id, query));
+        if (!open) fail(new EOFException("Connection to " + server + " closed"));
+        return query;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        fail(new EOFException("Connection to " + server + " closed"));
+    }
+
+    private void receiveLoop() {
+        ByteBuffer length = ByteBuffer.allocate(2);
+        ByteBuffer msg = ByteBuffer.allocate(0xFFFF);
+        try {
+            while (true) {
+                readFully(length.clear());
+                msg.clear().limit(Short.toUnsignedInt(length.getShort(0)));
+                readFully(msg);
+                msg.flip();
+                if (msg.limit() < DnsCodec.HEADER_LENGTH) continue;
+                Pending<?> query = pending.get(DnsCodec.id(msg));
+                if (query == null || DnsCodec.questionHash(msg) != query.questionHash) continue;
+                if (pending.remove(query.id, query)) query.accept(msg);
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void readFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) throw new EOFException();
+        }
+    }
+
+    private void fail(Throwable cause) {
+        for (Pending<?> q : pending.values()) {
+            if (pending.remove(q.id, q)) q.completeExceptionally(cause);
+        }
+    }
+
+    private static final class Pending<T> extends CompletableFuture<T> {
+        final AsyncDnsClient.ResponseHandler<T> handler;
+        long questionHash;
+        int id = -1;
+
+        Pending(AsyncDnsClient.ResponseHandler<T> handler) {
+            this.handler = handler;
+        }
+
+        void accept(ByteBuffer msg) {
+            try {
+                complete(handler.handle(msg));
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            }
+        }
+    }
+}
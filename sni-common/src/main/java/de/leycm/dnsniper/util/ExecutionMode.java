@@ -0,0 +1,69 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the kind of threads the scanners run their blocking work on.
+ * <p>
+ * In {@link #PLATFORM} mode a scanner uses a fixed pool of OS threads, so the pool size
+ * doubles as the concurrency limit. In {@link #VIRTUAL} mode every task gets its own
+ * virtual thread and concurrency is limited only by the scanner's permits, which lets
+ * blocking connects and lookups scale to tens of thousands in flight.
+ * </p>
+ */
+public enum ExecutionMode {
+    PLATFORM, // Fixed pool of platform threads
+    VIRTUAL;  // One virtual thread per task, bounded by permits
+
+    /**
+     * System property used by the default scanner constructors to pick the mode
+     * (e.g. {@code -Ddnsniper.execution=virtual}).
+     */
+    public static final String PROPERTY = "dnsniper.execution";
+
+    /**
+     * Resolves the mode from the {@value #PROPERTY} system property.
+     *
+     * @return the configured mode, or {@link #PLATFORM} if unset or unknown
+     */
+    public static @NotNull ExecutionMode fromProperty() {
+        String value = System.getProperty(PROPERTY, "");
+        for (ExecutionMode m : values()) {
+            if (m.name().equalsIgnoreCase(value.trim())) return m;
+        }
+        return PLATFORM;
+    }
+
+    /**
+     * Creates an executor for this mode.
+     *
+     * @param name            prefix for the thread names
+     * @param platformThreads pool size used in {@link #PLATFORM} mode
+     * @return a new {@link ExecutorService}
+     */
+    public @NotNull ExecutorService newExecutor(@NotNull String name, int platformThreads) {
+        if (this == VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, r -> {
+            Thread t = new Thread(r, name + "-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
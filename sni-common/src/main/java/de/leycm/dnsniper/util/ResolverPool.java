@@ -0,0 +1,239 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Set of recursive resolvers ranked by how well they have been answering.
+ * <p>
+ * Every resolver keeps an exponentially weighted moving average (EWMA) of its response
+ * latency and of its failure rate (timeouts and send errors). Queries go to the resolver with
+ * the best score first, so a slow or dead resolver stops costing anything once it has been
+ * observed. Failures fade with time, which lets a resolver that recovers win back traffic.
+ * </p>
+ * <p>
+ * The pool also tracks a latency percentile per resolver. When a query has been outstanding
+ * for that long, the client sends a hedged duplicate to the next resolver and takes whichever
+ * answer comes first, which cuts the tail without doubling the load: only the slowest
+ * {@code 1 - percentile} of queries are hedged.
+ * </p>
+ * Thread-safe.
+ */
+public final class ResolverPool {
+
+    /**
+     * Percentile of a resolver's latency after which a query is hedged by default.
+     */
+    public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+
+    /**
+     * Hedge delay used while a resolver has too few samples for a percentile.
+     */
+    public static final int DEFAULT_HEDGE_DELAY_MS = 200;
+
+    private static final double ALPHA = 1.0 / 8;
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES = 16;
+    private static final double FAILURE_COST_MS = 1000;
+    private static final long FAILURE_HALF_LIFE_NANOS = 30_000_000_000L;
+
+    private final Resolver[] resolvers;
+    private final double hedgePercentile;
+
+    /**
+     * Creates a pool hedging at the {@value #DEFAULT_HEDGE_PERCENTILE} latency percentile.
+     *
+     * @param resolvers the resolvers; the order is the tie-breaker before any sample is taken
+     */
+    public ResolverPool(@NotNull List<InetSocketAddress> resolvers) {
+        this(resolvers, DEFAULT_HEDGE_PERCENTILE);
+    }
+
+    /**
+     * @param resolvers       the resolvers; the order is the tie-breaker before any sample is taken
+     * @param hedgePercentile the latency percentile (0-1) after which a query is sent to a second
+     *                        resolver as well, or {@code 0} to disable hedging
+     */
+    public ResolverPool(@NotNull List<InetSocketAddress> resolvers, double hedgePercentile) {
+        if (resolvers.isEmpty()) throw new IllegalArgumentException("at least one resolver required");
+        if (hedgePercentile < 0 || hedgePercentile > 1) {
+            throw new IllegalArgumentException("hedgePercentile must be within [0, 1]");
+        }
+        this.resolvers = new Resolver[resolvers.size()];
+        for (int i = 0; i < this.resolvers.length; i++) this.resolvers[i] = new Resolver(resolvers.get(i), i);
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * @return the resolvers ordered from best to worst score
+     */
+    public @NotNull List<InetSocketAddress> ranked() {
+        Resolver[] order = rankedResolvers();
+        List<InetSocketAddress> out = new ArrayList<>(order.length);
+        for (Resolver r : order) out.add(r.address);
+        return out;
+    }
+
+    /**
+     * @return the number of resolvers
+     */
+    public int size() {
+        return resolvers.length;
+    }
+
+    /**
+     * @param resolver a resolver of this pool
+     * @return how long to wait for its answer before hedging, or {@code -1} if hedging is disabled
+     */
+    public long hedgeDelayMs(@NotNull InetSocketAddress resolver) {
+        Resolver r = find(resolver);
+        if (r == null || hedgePercentile <= 0 || resolvers.length < 2) return -1;
+        return r.percentileMs(hedgePercentile);
+    }
+
+    /**
+     * Records an answer from a resolver.
+     *
+     * @param resolver  a resolver of this pool
+     * @param latencyMs the time from sending the query to receiving the response
+     */
+    public void onSuccess(@NotNull InetSocketAddress resolver, long latencyMs) {
+        Resolver r = find(resolver);
+        if (r != null) r.onSuccess(latencyMs);
+    }
+
+    /**
+     * Records a query to a resolver that timed out or could not be sent.
+     *
+     * @param resolver a resolver of this pool
+     */
+    public void onFailure(@NotNull InetSocketAddress resolver) {
+        Resolver r = find(resolver);
+        if (r != null) r.onFailure();
+    }
+
+    /**
+     * @return a snapshot of every resolver's statistics, in configuration order
+     */
+    public @NotNull List<Stats> stats() {
+        List<Stats> out = new ArrayList<>(resolvers.length);
+        for (Resolver r : resolvers) out.add(r.stats(hedgePercentile));
+        return out;
+    }
+
+    Resolver[] rankedResolvers() {
+        long now = System.nanoTime();
+        Resolver[] order = resolvers.clone();
+        double[] scores = new double[order.length];
+        for (Resolver r : order) scores[r.index] = r.score(now);
+        Arrays.sort(order, Comparator.<Resolver>comparingDouble(r -> scores[r.index]).thenComparingInt(r -> r.index));
+        return order;
+    }
+
+    private Resolver find(InetSocketAddress address) {
+        for (Resolver r : resolvers) {
+            if (r.address.equals(address)) return r;
+        }
+        return null;
+    }
+
+    /**
+     * Statistics of one resolver.
+     *
+     * @param resolver      the resolver address
+     * @param latencyMs     the EWMA of its response latency
+     * @param failureRate   the EWMA of its failure rate, decayed by the time since the last failure
+     * @param hedgeDelayMs  the latency percentile used as hedge delay, or {@code -1} if hedging is disabled
+     * @param successes     the number of answers received
+     * @param failures      the number of queries that failed
+     */
+    public record Stats(InetSocketAddress resolver, double latencyMs, double failureRate, long hedgeDelayMs,
+                        long successes, long failures) {}
+
+    static final class Resolver {
+        final InetSocketAddress address;
+        final int index;
+        private final int[] window = new int[WINDOW];
+        private int windowSize;
+        private int windowPos;
+        private int[] sorted = new int[0];
+        private int samplesSinceSort;
+        private double latencyMs;
+        private double failureRate;
+        private long rateNanos; // when failureRate was last updated
+        private long successes;
+        private long failures;
+
+        Resolver(InetSocketAddress address, int index) {
+            this.address = address;
+            this.index = index;
+        }
+
+        synchronized void onSuccess(long latency) {
+            int ms = (int) Math.max(0, Math.min(latency, Integer.MAX_VALUE));
+            latencyMs = successes == 0 ? ms : latencyMs + ALPHA * (ms - latencyMs);
+            long now = System.nanoTime();
+            failureRate = decayedFailureRate(now) * (1 - ALPHA);
+            rateNanos = now;
+            window[windowPos] = ms;
+            windowPos = (windowPos + 1) % WINDOW;
+            if (windowSize < WINDOW) windowSize++;
+            samplesSinceSort++;
+            successes++;
+        }
+
+        synchronized void onFailure() {
+            long now = System.nanoTime();
+            failureRate = decayedFailureRate(now) * (1 - ALPHA) + ALPHA;
+            rateNanos = now;
+            failures++;
+        }
+
+        /**
+         * Expected cost of sending a query here in milliseconds: the latency if it answers,
+         * a fixed penalty if it fails. Lower is better; untried resolvers score 0.
+         */
+        synchronized double score(long now) {
+            double fail = decayedFailureRate(now);
+            return (1 - fail) * latencyMs + fail * FAILURE_COST_MS;
+        }
+
+        synchronized long percentileMs(double p) {
+            if (windowSize < MIN_SAMPLES) {
+                return successes == 0 ? DEFAULT_HEDGE_DELAY_MS : Math.max(1, Math.round(2 * latencyMs));
+            }
+            // re-sort only every few samples; the percentile moves slowly anyway
+            if (sorted.length != windowSize || samplesSinceSort >= MIN_SAMPLES) {
+                sorted = Arrays.copyOf(window, windowSize);
+                Arrays.sort(sorted);
+                samplesSinceSort = 0;
+            }
+            return Math.max(1, sorted[Math.min(windowSize - 1, (int) Math.ceil(p * windowSize) - 1)]);
+        }
+
+        synchronized Stats stats(double hedgePercentile) {
+            return new Stats(address, latencyMs, decayedFailureRate(System.nanoTime()),
+                    hedgePercentile > 0 ? percentileMs(hedgePercentile) : -1, successes, failures);
+        }
+
+        private double decayedFailureRate(long now) {
+            if (failureRate == 0) return 0;
+            return failureRate * Math.pow(0.5, (double) (now - rateNanos) / FAILURE_HALF_LIFE_NANOS);
+        }
+    }
+}
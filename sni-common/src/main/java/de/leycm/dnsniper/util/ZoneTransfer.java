@@ -0,0 +1,119 @@
+/**
+ * LECP-LICENSE NOTICE
+ * <br><br>
+ * This Sourcecode is under the LECP-LICENSE. <br>
+ * License at: <a href="https://github.com/leycm/leycm/blob/main/LICENSE">GITHUB</a>
+ * <br><br>
+ * Copyright (c) LeyCM <leycm@proton.me> <br>
+ * Copyright (c) maintainers <br>
+ * Copyright (c) contributors
+ */
+package de.leycm.dnsniper.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Full zone transfer (AXFR, RFC 5936) over TCP.
+ * <p>
+ * The server streams the zone as a sequence of messages framed like any DNS over TCP
+ * response; the transfer starts and ends with the zone's SOA record. Only the owner names
+ * are kept, which is all an enumeration needs, so even large zones cost little memory.
+ * Besides the timeout of every read, the whole transfer is bounded by a deadline, so a server
+ * trickling bytes cannot keep it running forever.
+ * </p>
+ */
+public final class ZoneTransfer {
+
+    public static final int TYPE_AXFR = 252;
+
+    private ZoneTransfer() {
+    }
+
+    /**
+     * Transfers a zone and collects the owner names of its records.
+     *
+     * @param server    the name server, usually port 53 of an authoritative server
+     * @param zone      the zone apex
+     * @param timeoutMs the timeout of the connect and of every read
+     * @param maxDurationMs the time the whole transfer may take
+     * @return the distinct owner names in lower case, in transfer order, starting with the apex
+     * @throws IOException if the server refuses the transfer, fails, closes the connection early
+     *                     or does not finish in time
+     */
+    public static @NotNull List<String> ownerNames(@NotNull InetSocketAddress server, @NotNull String zone,
+                                                   int timeoutMs, long maxDurationMs) throws IOException {
+        long deadline = System.nanoTime() + maxDurationMs * 1_000_000L;
+        try (Socket socket = new Socket()) {
+            socket.connect(server, (int) Math.min(timeoutMs, maxDurationMs));
+
+            int id = ThreadLocalRandom.current().nextInt(0x10000);
+            ByteBuffer query = ByteBuffer.allocate(2 + DnsCodec.MAX_QUERY_LENGTH).position(2);
+            int length = DnsCodec.encodeQuery(query, id, zone, TYPE_AXFR);
+            query.putShort(0, (short) length);
+            OutputStream out = socket.getOutputStream();
+            out.write(query.array(), 0, 2 + length);
+            out.flush();
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            byte[] prefix = new byte[2];
+            Set<String> names = new LinkedHashSet<>();
+            int soaCount = 0;
+            while (soaCount < 2) {
+                readFully(socket, in, prefix, timeoutMs, deadline);
+                byte[] raw = new byte[((prefix[0] & 0xFF) << 8) | (prefix[1] & 0xFF)];
+                readFully(socket, in, raw, timeoutMs, deadline);
+                DnsMessage msg = DnsMessage.wrap(raw);
+                if (msg.id() != id) throw new IOException("Unexpected message id " + msg.id());
+                if (msg.rcode() != DnsMessage.RCODE_NOERROR) {
+                    throw new IOException("Zone transfer of " + zone + " refused with rcode " + msg.rcode());
+                }
+                if (msg.answerCount() == 0) throw new IOException("Zone transfer of " + zone + " sent no records");
+                try {
+                    DnsMessage.Records records = msg.answers();
+                    while (records.next()) {
+                        boolean soa = records.type() == DnsCodec.TYPE_SOA;
+                        if (names.isEmpty() && !soa) throw new IOException("Zone transfer does not start with SOA");
+                        // the second SOA closes the transfer
+                        if (soa && ++soaCount == 2) break;
+                        names.add(records.name().toLowerCase(Locale.ROOT));
+                    }
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    throw new IOException("Malformed zone transfer message", e);
+                }
+            }
+            return List.copyOf(names);
+        }
+    }
+
+    /**
+     * Reads exactly {@code buf.length} bytes, each read waiting at most {@code timeoutMs} and
+     * none past the deadline.
+     */
+    private static void readFully(Socket socket, InputStream in, byte[] buf, int timeoutMs, long deadline)
+            throws IOException {
+        int off = 0;
+        while (off < buf.length) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+            if (remainingMs <= 0) throw new SocketTimeoutException("Zone transfer did not finish in time");
+            socket.setSoTimeout((int) Math.min(timeoutMs, remainingMs));
+            int n = in.read(buf, off, buf.length - off);
+            if (n < 0) throw new EOFException("Zone transfer connection closed early");
+            off += n;
+        }
+    }
+}